@@ -0,0 +1,94 @@
+package domain;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// for t in 1 2 4 8; do java -jar target/benchmarks.jar ConcurrentEngineBenchmark -t $t; done
+// Throughput is per transaction and summed over threads, so flat numbers across -t mean
+// the writers serialize; compare addTransaction (one pattern turn per transaction) with
+// addBatch (one per batch).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ConcurrentEngineBenchmark {
+    static final int ACCOUNTS = 100_000;
+    static final int STREAM_SIZE = 1 << 16;
+    static final int BATCH_SIZE = 64;
+
+    ConcurrentTransactionEngine engine;
+
+    @State(Scope.Thread)
+    public static class Writer {
+        int[] accounts;
+        int[] amounts;
+        boolean[] debits;
+        List<Transaction> batch;
+        int cursor;
+        int nextId;
+
+        @Setup(Level.Trial)
+        public void setUp(ThreadParams threads) {
+            var random = new SplittableRandom(threads.getThreadIndex());
+            accounts = new int[STREAM_SIZE];
+            amounts = new int[STREAM_SIZE];
+            debits = new boolean[STREAM_SIZE];
+            for (var i = 0; i < STREAM_SIZE; i++) {
+                accounts[i] = random.nextInt(ACCOUNTS);
+                amounts[i] = random.nextInt(8) == 0 ? 1000 + random.nextInt(3) * 250 : random.nextInt(1500);
+                debits[i] = random.nextBoolean();
+            }
+            batch = new ArrayList<>(BATCH_SIZE);
+        }
+
+        // fresh ids from a range of its own, so dedup never short-circuits
+        @Setup(Level.Iteration)
+        public void resetIds(ThreadParams threads) {
+            nextId = threads.getThreadIndex() * (Integer.MAX_VALUE / threads.getThreadCount());
+        }
+
+        Transaction next() {
+            var index = cursor++ & (STREAM_SIZE - 1);
+            return new Transaction(nextId++, accounts[index], amounts[index], debits[index]);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void newEngine() {
+        engine = new ConcurrentTransactionEngine();
+    }
+
+    @Benchmark
+    public int addTransaction(Writer writer) {
+        return engine.addTransactionAndDetectFraud(writer.next());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int[] addBatch(Writer writer) {
+        var batch = writer.batch;
+        batch.clear();
+        for (var i = 0; i < BATCH_SIZE; i++) {
+            batch.add(writer.next());
+        }
+        return engine.addTransactionsAndDetectFraud(batch);
+    }
+}
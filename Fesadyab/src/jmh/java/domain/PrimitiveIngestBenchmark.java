@@ -0,0 +1,81 @@
+package domain;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// java -jar target/benchmarks.jar PrimitiveIngestBenchmark -prof gc
+// The engine is bounded to historySize, so after warmup every column and index is at its
+// working size and gc.alloc.rate.norm should read 0 B/op for both paths.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class PrimitiveIngestBenchmark {
+    static final int STREAM_SIZE = 1 << 16;
+    static final int ACCOUNTS = 10_000;
+
+    @Param({"1000", "1000000"})
+    int historySize;
+
+    TransactionEngine engine;
+    int[] accountIds;
+    int[] amounts;
+    boolean[] debits;
+    Transaction flyweight;
+    int cursor;
+    int nextId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var random = new SplittableRandom(42);
+        accountIds = new int[STREAM_SIZE];
+        amounts = new int[STREAM_SIZE];
+        debits = new boolean[STREAM_SIZE];
+        for (var i = 0; i < STREAM_SIZE; i++) {
+            accountIds[i] = random.nextInt(ACCOUNTS);
+            amounts[i] = 1 + random.nextInt(2_000);
+            debits[i] = random.nextInt(4) == 0;
+        }
+
+        var options = new EngineOptions();
+        options.setRetentionPolicy(RetentionPolicy.maxTransactions(historySize));
+        engine = new TransactionEngine(options);
+        for (var i = 0; i < historySize; i++) {
+            var index = i & (STREAM_SIZE - 1);
+            engine.addAndScore(i, accountIds[index], amounts[index], debits[index]);
+        }
+        flyweight = new Transaction();
+        nextId = historySize;
+    }
+
+    @Benchmark
+    public int addAndScore() {
+        var index = cursor++ & (STREAM_SIZE - 1);
+        return engine.addAndScore(nextId++, accountIds[index], amounts[index], debits[index]);
+    }
+
+    @Benchmark
+    public int addTransactionAndDetectFraud() {
+        var index = cursor++ & (STREAM_SIZE - 1);
+        flyweight.transactionId = nextId++;
+        flyweight.accountId = accountIds[index];
+        flyweight.amount = amounts[index];
+        flyweight.isDebit = debits[index];
+        return engine.addTransactionAndDetectFraud(flyweight);
+    }
+}
@@ -0,0 +1,80 @@
+package domain;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+// java -jar target/benchmarks.jar ShardedEngineBenchmark
+// one operation scores a whole batch; compare shard counts at the same batch size
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ShardedEngineBenchmark {
+    static final int ACCOUNTS = 2_000;
+
+    @Param({"1", "2", "4", "8"})
+    int shardCount;
+
+    @Param({"50000"})
+    int batchSize;
+
+    ForkJoinPool pool;
+    ShardedTransactionEngine engine;
+    int[] ids;
+    int[] accounts;
+    int[] amounts;
+    boolean[] debits;
+    int nextId;
+
+    @Setup(Level.Trial)
+    public void startPool() {
+        pool = new ForkJoinPool(shardCount);
+        var random = new SplittableRandom(1);
+        ids = new int[batchSize];
+        accounts = new int[batchSize];
+        amounts = new int[batchSize];
+        debits = new boolean[batchSize];
+        for (var i = 0; i < batchSize; i++) {
+            accounts[i] = random.nextInt(ACCOUNTS);
+            amounts[i] = random.nextInt(8) == 0 ? 1000 + random.nextInt(3) * 250 : random.nextInt(1500);
+            debits[i] = random.nextBoolean();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void newEngine() {
+        engine = new ShardedTransactionEngine(shardCount, pool);
+        nextId = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void stopPool() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public int[] addTransactionsAndDetectFraud() {
+        // fresh ids every batch, so dedup never short-circuits the scoring phase
+        for (var i = 0; i < batchSize; i++) {
+            ids[i] = nextId++;
+        }
+        return engine.addTransactionsAndDetectFraud(ids, accounts, amounts, debits);
+    }
+}
@@ -0,0 +1,130 @@
+package domain;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// java -jar target/benchmarks.jar TransactionEngineBenchmark -prof gc
+// narrow the matrix with e.g. -p historySize=1000000 -p workload=UNIQUE
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class TransactionEngineBenchmark {
+    static final int STREAM_SIZE = 1 << 16;
+    static final int ACCOUNTS = 100_000;
+
+    public enum Workload {
+        UNIQUE,
+        DUPLICATE_HEAVY
+    }
+
+    public enum AccountDistribution {
+        UNIFORM,
+        ZIPF
+    }
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int historySize;
+
+    @Param({"UNIQUE", "DUPLICATE_HEAVY"})
+    Workload workload;
+
+    @Param({"UNIFORM", "ZIPF"})
+    AccountDistribution accounts;
+
+    @Param({"0.2", "0.8"})
+    double debitRatio;
+
+    TransactionEngine engine;
+    Transaction[] stream;
+    boolean[] replays;
+    int cursor;
+    int nextId;
+
+    @Setup(Level.Trial)
+    public void generateStream() {
+        var random = new SplittableRandom(42);
+        var sampler = accounts == AccountDistribution.ZIPF ? zipfCdf(ACCOUNTS, 1.1) : null;
+
+        stream = new Transaction[STREAM_SIZE];
+        replays = new boolean[STREAM_SIZE];
+        for (var i = 0; i < STREAM_SIZE; i++) {
+            var accountId = sampler == null ? random.nextInt(ACCOUNTS) : sample(sampler, random.nextDouble());
+            var amount = 1 + random.nextInt(2_000);
+            stream[i] = new Transaction(0, accountId, amount, random.nextDouble() < debitRatio);
+            replays[i] = workload == Workload.DUPLICATE_HEAVY && random.nextInt(10) != 0;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void prefillEngine() {
+        var random = new SplittableRandom(7);
+        var ids = new int[historySize];
+        var accountIds = new int[historySize];
+        var amounts = new int[historySize];
+        var debits = new boolean[historySize];
+        for (var i = 0; i < historySize; i++) {
+            var txn = stream[i & (STREAM_SIZE - 1)];
+            ids[i] = i;
+            accountIds[i] = txn.accountId;
+            amounts[i] = 1 + random.nextInt(2_000);
+            debits[i] = txn.isDebit;
+        }
+
+        engine = new TransactionEngine();
+        engine.addTransactionsAndDetectFraud(ids, accountIds, amounts, debits);
+        cursor = 0;
+        nextId = historySize;
+    }
+
+    @Benchmark
+    public int addTransactionAndDetectFraud() {
+        var index = cursor++ & (STREAM_SIZE - 1);
+        var txn = stream[index];
+        // replays reuse an id that is already in the history; everything else is new
+        txn.transactionId = replays[index] ? (int) ((cursor * 0x9E3779B9L & 0x7FFFFFFFL) % historySize) : nextId++;
+        return engine.addTransactionAndDetectFraud(txn);
+    }
+
+    static double[] zipfCdf(int n, double exponent) {
+        var cdf = new double[n];
+        var total = 0.0;
+        for (var rank = 1; rank <= n; rank++) {
+            total += 1.0 / Math.pow(rank, exponent);
+            cdf[rank - 1] = total;
+        }
+        for (var i = 0; i < n; i++) {
+            cdf[i] /= total;
+        }
+        return cdf;
+    }
+
+    static int sample(double[] cdf, double u) {
+        var low = 0;
+        var high = cdf.length - 1;
+        while (low < high) {
+            var mid = (low + high) >>> 1;
+            if (cdf[mid] < u) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
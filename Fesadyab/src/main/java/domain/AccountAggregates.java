@@ -0,0 +1,218 @@
+package domain;
+
+import java.util.Arrays;
+
+public class AccountAggregates {
+    static final int DEFAULT_CAPACITY = 16;
+
+    // open-addressing index from accountId to a dense, never-moving account slot
+    int[] tableKeys;
+    int[] tableSlots;
+
+    int[] accountIds;
+    long[] sums;
+    int[] counts;
+    // slots handed out so far, live or released; the columns are valid up to here
+    int size;
+    // released slots, reused before the columns grow
+    int[] freeSlots = new int[0];
+    int freeCount;
+
+    public AccountAggregates() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public AccountAggregates(int expectedAccounts) {
+        var capacity = tableSizeFor(expectedAccounts);
+        tableKeys = new int[capacity];
+        tableSlots = new int[capacity];
+        accountIds = new int[Math.max(expectedAccounts, DEFAULT_CAPACITY)];
+        sums = new long[accountIds.length];
+        counts = new int[accountIds.length];
+    }
+
+    public void add(int accountId, int amount) {
+        addToSlot(slotFor(accountId), amount);
+    }
+
+    void addToSlot(int slot, int amount) {
+        sums[slot] += amount;
+        counts[slot]++;
+    }
+
+    void removeFromSlot(int slot, int amount) {
+        sums[slot] -= amount;
+        counts[slot]--;
+    }
+
+    public long getSum(int accountId) {
+        var slot = find(accountId);
+        return slot < 0 ? 0 : sums[slot];
+    }
+
+    public int getCount(int accountId) {
+        var slot = find(accountId);
+        return slot < 0 ? 0 : counts[slot];
+    }
+
+    public int getAverage(int accountId) {
+        var slot = find(accountId);
+        return slot < 0 ? 0 : average(slot);
+    }
+
+    int average(int slot) {
+        if (counts[slot] == 0) {
+            return 0;
+        }
+        return (int) (sums[slot] / counts[slot]);
+    }
+
+    // accounts that currently hold a slot
+    public int size() {
+        return size - freeCount;
+    }
+
+    public void clear() {
+        Arrays.fill(tableSlots, 0);
+        Arrays.fill(sums, 0, size, 0);
+        Arrays.fill(counts, 0, size, 0);
+        size = 0;
+        freeCount = 0;
+    }
+
+    public void ensureCapacity(int expectedAccounts) {
+        var required = tableSizeFor(expectedAccounts);
+        if (required > tableKeys.length) {
+            rehash(required);
+        }
+        if (expectedAccounts > accountIds.length) {
+            growSlots(expectedAccounts);
+        }
+    }
+
+    int find(int accountId) {
+        var mask = tableKeys.length - 1;
+        var index = mix(accountId) & mask;
+        while (tableSlots[index] != 0) {
+            if (tableKeys[index] == accountId) {
+                return tableSlots[index] - 1;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Hands the slot of an account without retained transactions back for reuse. Returns
+    // false, changing nothing, if the account still has some or the slot is already free.
+    // The caller resets whatever else it keeps per slot.
+    boolean release(int slot) {
+        if (counts[slot] != 0 || find(accountIds[slot]) != slot) {
+            return false;
+        }
+
+        // backward-shift deletion: pull later entries of the probe run into the hole, so
+        // lookups never need tombstones
+        var mask = tableKeys.length - 1;
+        var hole = mix(accountIds[slot]) & mask;
+        while (tableSlots[hole] != slot + 1) {
+            hole = (hole + 1) & mask;
+        }
+        for (var index = (hole + 1) & mask; tableSlots[index] != 0; index = (index + 1) & mask) {
+            var home = mix(tableKeys[index]) & mask;
+            if (((index - home) & mask) >= ((index - hole) & mask)) {
+                tableKeys[hole] = tableKeys[index];
+                tableSlots[hole] = tableSlots[index];
+                hole = index;
+            }
+        }
+        tableSlots[hole] = 0;
+
+        sums[slot] = 0;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, Math.max(DEFAULT_CAPACITY, freeCount * 2));
+        }
+        freeSlots[freeCount++] = slot;
+        return true;
+    }
+
+    // after the table and columns were loaded wholesale, e.g. by a snapshot restore
+    void rebuildFreeSlots() {
+        var live = new boolean[size];
+        for (var tableSlot : tableSlots) {
+            if (tableSlot != 0) {
+                live[tableSlot - 1] = true;
+            }
+        }
+        freeSlots = new int[size];
+        freeCount = 0;
+        // lowest slots are reused first
+        for (var slot = size - 1; slot >= 0; slot--) {
+            if (!live[slot]) {
+                freeSlots[freeCount++] = slot;
+            }
+        }
+    }
+
+    int slotFor(int accountId) {
+        var mask = tableKeys.length - 1;
+        var index = mix(accountId) & mask;
+        while (tableSlots[index] != 0) {
+            if (tableKeys[index] == accountId) {
+                return tableSlots[index] - 1;
+            }
+            index = (index + 1) & mask;
+        }
+
+        if ((size() + 1) * 2 > tableKeys.length) {
+            rehash(tableKeys.length * 2);
+            return slotFor(accountId);
+        }
+        if (freeCount == 0 && size == accountIds.length) {
+            growSlots(size + (size >> 1) + 1);
+        }
+
+        var slot = freeCount > 0 ? freeSlots[--freeCount] : size++;
+        tableKeys[index] = accountId;
+        tableSlots[index] = slot + 1;
+        accountIds[slot] = accountId;
+        return slot;
+    }
+
+    void growSlots(int capacity) {
+        accountIds = Arrays.copyOf(accountIds, capacity);
+        sums = Arrays.copyOf(sums, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+    }
+
+    private void rehash(int capacity) {
+        var oldKeys = tableKeys;
+        var oldSlots = tableSlots;
+        tableKeys = new int[capacity];
+        tableSlots = new int[capacity];
+        var mask = capacity - 1;
+        for (var i = 0; i < oldSlots.length; i++) {
+            if (oldSlots[i] == 0) {
+                continue;
+            }
+            var index = mix(oldKeys[i]) & mask;
+            while (tableSlots[index] != 0) {
+                index = (index + 1) & mask;
+            }
+            tableKeys[index] = oldKeys[i];
+            tableSlots[index] = oldSlots[i];
+        }
+    }
+
+    static int tableSizeFor(int expected) {
+        var capacity = DEFAULT_CAPACITY;
+        while (capacity < expected * 2L) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    static int mix(int key) {
+        var h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
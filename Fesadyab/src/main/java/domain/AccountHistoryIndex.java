@@ -0,0 +1,235 @@
+package domain;
+
+import java.util.Arrays;
+
+// Secondary index over TransactionHistory, keyed by account slot:
+//   - a chain per account: for every retained transaction, the sequence of the account's
+//     previous transaction, kept in a ring that drops in step with the history, plus the
+//     account's latest sequence; walking it newest-first answers last-N in O(N),
+//   - a bounded min-heap per account of its topK largest live debits, updated in O(log k)
+//     per debit. When a transaction in the heap is evicted the heap is only marked stale;
+//     the next query refills it from the account's chain. Ingest therefore stays O(log k)
+//     per transaction, and a refill costs O(live transactions of the account) once per
+//     query that follows an eviction of one of its top debits.
+// Ties between equal amounts keep the newer transaction.
+public class AccountHistoryIndex {
+    static final long NONE = -1;
+    static final int DEFAULT_CAPACITY = 16;
+
+    final int topK;
+    long[] previous;
+    int head;
+    int size;
+    long[] latest;
+    long[] heapSequences;
+    int[] heapAmounts;
+    int[] heapSizes;
+    boolean[] stale;
+
+    public AccountHistoryIndex(int topK) {
+        if (topK <= 0) {
+            throw new IllegalArgumentException("Top-k must be positive");
+        }
+        this.topK = topK;
+        previous = new long[DEFAULT_CAPACITY];
+        latest = new long[DEFAULT_CAPACITY];
+        Arrays.fill(latest, NONE);
+        heapSequences = new long[DEFAULT_CAPACITY * topK];
+        heapAmounts = new int[DEFAULT_CAPACITY * topK];
+        heapSizes = new int[DEFAULT_CAPACITY];
+        stale = new boolean[DEFAULT_CAPACITY];
+    }
+
+    public void append(int slot, long sequence, int amount, boolean isDebit) {
+        if (slot >= latest.length) {
+            growSlots(slot + 1);
+        }
+        if (size == previous.length) {
+            growLinks();
+        }
+
+        previous[physical(size++)] = latest[slot];
+        latest[slot] = sequence;
+        // a stale heap is refilled from the chain anyway
+        if (isDebit && !stale[slot]) {
+            offer(slot, sequence, amount);
+        }
+    }
+
+    public void dropOldest() {
+        head = head + 1 == previous.length ? 0 : head + 1;
+        size--;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+        Arrays.fill(latest, NONE);
+        Arrays.fill(heapSizes, 0);
+        Arrays.fill(stale, false);
+    }
+
+    // the slot is about to belong to another account; its chain already left the history
+    public void reset(int slot) {
+        if (slot < latest.length) {
+            latest[slot] = NONE;
+            heapSizes[slot] = 0;
+            stale[slot] = false;
+        }
+    }
+
+    public long latest(int slot) {
+        return slot < latest.length ? latest[slot] : NONE;
+    }
+
+    // sequence of the account's transaction before the one at `index` in the history
+    public long previous(int index) {
+        return previous[physical(index)];
+    }
+
+    public boolean isTopDebit(int slot, long sequence) {
+        if (slot >= heapSizes.length) {
+            return false;
+        }
+        var base = slot * topK;
+        for (var i = 0; i < heapSizes[slot]; i++) {
+            if (heapSequences[base + i] == sequence) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Called when the account's transaction at `sequence` stops being live; O(k).
+    public void evict(int slot, long sequence) {
+        if (!stale[slot] && isTopDebit(slot, sequence)) {
+            stale[slot] = true;
+        }
+    }
+
+    public boolean isStale(int slot) {
+        return slot < stale.length && stale[slot];
+    }
+
+    // Refills the account's heap from its newest `live` transactions still in the history.
+    public void rebuildTopDebits(int slot, TransactionHistory history, int live) {
+        heapSizes[slot] = 0;
+        stale[slot] = false;
+        var sequence = latest(slot);
+        for (var i = 0; i < live && sequence >= history.firstSequence(); i++) {
+            var index = (int) (sequence - history.firstSequence());
+            if (history.isDebit(index)) {
+                offer(slot, sequence, history.amount(index));
+            }
+            sequence = previous(index);
+        }
+    }
+
+    // Writes the account's top debit sequences, largest first, and returns how many.
+    public int topDebits(int slot, long[] sequences) {
+        if (slot >= heapSizes.length) {
+            return 0;
+        }
+        var base = slot * topK;
+        var count = heapSizes[slot];
+        var amounts = Arrays.copyOfRange(heapAmounts, base, base + count);
+        var order = Arrays.copyOfRange(heapSequences, base, base + count);
+        // insertion sort, largest amount (then newest) first; k is small
+        for (var i = 1; i < count; i++) {
+            var amount = amounts[i];
+            var sequence = order[i];
+            var j = i - 1;
+            while (j >= 0 && less(amounts[j], order[j], amount, sequence)) {
+                amounts[j + 1] = amounts[j];
+                order[j + 1] = order[j];
+                j--;
+            }
+            amounts[j + 1] = amount;
+            order[j + 1] = sequence;
+        }
+        System.arraycopy(order, 0, sequences, 0, count);
+        return count;
+    }
+
+    public long memoryBytes() {
+        return (long) Long.BYTES * (previous.length + latest.length + heapSequences.length)
+                + (long) Integer.BYTES * (heapAmounts.length + heapSizes.length) + stale.length;
+    }
+
+    private void offer(int slot, long sequence, int amount) {
+        var base = slot * topK;
+        var count = heapSizes[slot];
+        if (count < topK) {
+            heapSizes[slot]++;
+            siftUp(base, count, sequence, amount);
+        } else if (less(heapAmounts[base], heapSequences[base], amount, sequence)) {
+            siftDown(base, count, sequence, amount);
+        }
+    }
+
+    private void siftUp(int base, int index, long sequence, int amount) {
+        while (index > 0) {
+            var parent = (index - 1) >>> 1;
+            if (!less(amount, sequence, heapAmounts[base + parent], heapSequences[base + parent])) {
+                break;
+            }
+            heapAmounts[base + index] = heapAmounts[base + parent];
+            heapSequences[base + index] = heapSequences[base + parent];
+            index = parent;
+        }
+        heapAmounts[base + index] = amount;
+        heapSequences[base + index] = sequence;
+    }
+
+    // replaces the root with (sequence, amount)
+    private void siftDown(int base, int count, long sequence, int amount) {
+        var index = 0;
+        while (true) {
+            var child = 2 * index + 1;
+            if (child >= count) {
+                break;
+            }
+            if (child + 1 < count && less(heapAmounts[base + child + 1], heapSequences[base + child + 1],
+                    heapAmounts[base + child], heapSequences[base + child])) {
+                child++;
+            }
+            if (!less(heapAmounts[base + child], heapSequences[base + child], amount, sequence)) {
+                break;
+            }
+            heapAmounts[base + index] = heapAmounts[base + child];
+            heapSequences[base + index] = heapSequences[base + child];
+            index = child;
+        }
+        heapAmounts[base + index] = amount;
+        heapSequences[base + index] = sequence;
+    }
+
+    private static boolean less(int amount, long sequence, int otherAmount, long otherSequence) {
+        return amount < otherAmount || amount == otherAmount && sequence < otherSequence;
+    }
+
+    private int physical(int index) {
+        var slot = head + index;
+        return slot >= previous.length ? slot - previous.length : slot;
+    }
+
+    private void growLinks() {
+        var grown = new long[previous.length + (previous.length >> 1) + 1];
+        for (var i = 0; i < size; i++) {
+            grown[i] = previous[physical(i)];
+        }
+        previous = grown;
+        head = 0;
+    }
+
+    private void growSlots(int minSlots) {
+        var slots = Math.max(minSlots, latest.length + (latest.length >> 1));
+        var oldLength = latest.length;
+        latest = Arrays.copyOf(latest, slots);
+        Arrays.fill(latest, oldLength, slots, NONE);
+        heapSequences = Arrays.copyOf(heapSequences, Math.multiplyExact(slots, topK));
+        heapAmounts = Arrays.copyOf(heapAmounts, slots * topK);
+        heapSizes = Arrays.copyOf(heapSizes, slots);
+        stale = Arrays.copyOf(stale, slots);
+    }
+}
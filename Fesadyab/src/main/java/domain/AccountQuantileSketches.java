@@ -0,0 +1,149 @@
+package domain;
+
+import java.util.Arrays;
+
+// Per-account quantile sketches with relative-error log buckets (in the DDSketch style):
+// a positive amount v falls in bucket ceil(log_gamma v), so any reported quantile is within
+// `relativeAccuracy` of a real amount near that rank. Every account owns a fixed row of
+// `buckets` counters stored as a Fenwick tree, so adding, removing and the rank search
+// behind a quantile are all O(log buckets) with no allocation, and memory is exactly
+// 4 * (buckets + 1) bytes per account. Amounts <= 0 share bucket 0; amounts above the top
+// bucket are clamped into it, which under-reports only beyond gamma^(buckets - 2).
+// Counts are additive, so sketches built with the same parameters merge by adding rows;
+// that is how sharded engines combine their per-shard views of an account.
+public class AccountQuantileSketches {
+    static final int DEFAULT_CAPACITY = 16;
+
+    final int buckets;
+    final double relativeAccuracy;
+    final double gamma;
+    final double logGamma;
+    int[] trees;
+    int[] counts;
+
+    public AccountQuantileSketches(int buckets, double relativeAccuracy) {
+        this(buckets, relativeAccuracy, DEFAULT_CAPACITY);
+    }
+
+    public AccountQuantileSketches(int buckets, double relativeAccuracy, int accounts) {
+        if (buckets < 2 || !(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("Need at least 2 buckets and an accuracy in (0, 1)");
+        }
+        this.buckets = buckets;
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        trees = new int[Math.multiplyExact(Math.max(accounts, 1), buckets)];
+        counts = new int[Math.max(accounts, 1)];
+    }
+
+    public void add(int slot, int amount) {
+        if (slot >= counts.length) {
+            grow(slot + 1);
+        }
+        update(slot, bucketOf(amount), 1);
+        counts[slot]++;
+    }
+
+    public void remove(int slot, int amount) {
+        update(slot, bucketOf(amount), -1);
+        counts[slot]--;
+    }
+
+    public int count(int slot) {
+        return slot < counts.length ? counts[slot] : 0;
+    }
+
+    // The amount at quantile q (0..1) of the account's sketch, or 0 for an empty sketch.
+    public double quantile(int slot, double q) {
+        var count = count(slot);
+        if (count == 0) {
+            return 0;
+        }
+
+        var rank = Math.max(1, (int) Math.ceil(q * count));
+        var base = slot * buckets;
+        var position = 0;
+        for (var step = Integer.highestOneBit(buckets); step > 0; step >>>= 1) {
+            var next = position + step;
+            if (next <= buckets && trees[base + next - 1] < rank) {
+                position = next;
+                rank -= trees[base + next - 1];
+            }
+        }
+        return valueOf(position);
+    }
+
+    // Adds the other sketch's row for otherSlot into this sketch's row for slot.
+    public void merge(int slot, AccountQuantileSketches other, int otherSlot) {
+        if (other.buckets != buckets || other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Sketches must share bucket count and accuracy to merge");
+        }
+        if (slot >= counts.length) {
+            grow(slot + 1);
+        }
+        if (otherSlot >= other.counts.length) {
+            return;
+        }
+
+        // Fenwick trees are linear in the counts they encode, so rows add element-wise
+        var base = slot * buckets;
+        var otherBase = otherSlot * buckets;
+        for (var i = 0; i < buckets; i++) {
+            trees[base + i] += other.trees[otherBase + i];
+        }
+        counts[slot] += other.counts[otherSlot];
+    }
+
+    // A single-account sketch holding a copy of the given row.
+    public AccountQuantileSketches copy(int slot) {
+        var copy = new AccountQuantileSketches(buckets, relativeAccuracy, 1);
+        copy.merge(0, this, slot);
+        return copy;
+    }
+
+    public void clear() {
+        Arrays.fill(trees, 0);
+        Arrays.fill(counts, 0);
+    }
+
+    public void reset(int slot) {
+        if (slot < counts.length) {
+            Arrays.fill(trees, slot * buckets, (slot + 1) * buckets, 0);
+            counts[slot] = 0;
+        }
+    }
+
+    public long memoryBytes() {
+        return (long) Integer.BYTES * (trees.length + counts.length);
+    }
+
+    int bucketOf(int amount) {
+        if (amount <= 0) {
+            return 0;
+        }
+        var bucket = 1 + (int) Math.ceil(Math.log(amount) / logGamma);
+        return Math.min(Math.max(bucket, 1), buckets - 1);
+    }
+
+    // midpoint (in relative terms) of the bucket's range (gamma^(j-1), gamma^j]
+    double valueOf(int bucket) {
+        if (bucket == 0) {
+            return 0;
+        }
+        return 2 * Math.pow(gamma, bucket - 1) / (gamma + 1);
+    }
+
+    private void update(int slot, int bucket, int delta) {
+        var base = slot * buckets;
+        for (var i = bucket + 1; i <= buckets; i += i & -i) {
+            trees[base + i - 1] += delta;
+        }
+    }
+
+    private void grow(int minSlots) {
+        var slots = Math.max(minSlots, counts.length + (counts.length >> 1));
+        trees = Arrays.copyOf(trees, Math.multiplyExact(slots, buckets));
+        counts = Arrays.copyOf(counts, slots);
+    }
+}
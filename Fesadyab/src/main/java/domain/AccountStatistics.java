@@ -0,0 +1,115 @@
+package domain;
+
+import java.util.Arrays;
+
+// Streaming per-account statistics in slot-indexed columns, a fixed 40 bytes per account:
+// Welford mean and variance, an exponentially weighted moving average, and min/max.
+// They describe every transaction the account has ever had accepted; like the pattern
+// detector they are a property of the stream, so retention evictions leave them alone.
+// The exception is an account whose last retained transaction is evicted: its slot goes to
+// another account, and if it comes back its statistics start over.
+public class AccountStatistics {
+    static final int DEFAULT_CAPACITY = 16;
+
+    public record Stats(long count, double mean, double variance, double ewma, int min, int max) {
+        public static final Stats EMPTY = new Stats(0, 0, 0, 0, 0, 0);
+
+        public double standardDeviation() {
+            return Math.sqrt(variance);
+        }
+    }
+
+    final double alpha;
+    long[] counts;
+    double[] means;
+    double[] m2s;
+    double[] ewmas;
+    int[] mins;
+    int[] maxes;
+
+    public AccountStatistics(double alpha) {
+        if (!(alpha > 0 && alpha <= 1)) {
+            throw new IllegalArgumentException("EWMA alpha must be in (0, 1]");
+        }
+        this.alpha = alpha;
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    public void accept(int slot, int amount) {
+        if (slot >= counts.length) {
+            grow(slot + 1);
+        }
+
+        var count = ++counts[slot];
+        var delta = amount - means[slot];
+        means[slot] += delta / count;
+        m2s[slot] += delta * (amount - means[slot]);
+        if (count == 1) {
+            ewmas[slot] = amount;
+            mins[slot] = amount;
+            maxes[slot] = amount;
+        } else {
+            ewmas[slot] += alpha * (amount - ewmas[slot]);
+            mins[slot] = Math.min(mins[slot], amount);
+            maxes[slot] = Math.max(maxes[slot], amount);
+        }
+    }
+
+    public long count(int slot) {
+        return slot < counts.length ? counts[slot] : 0;
+    }
+
+    public double mean(int slot) {
+        return slot < counts.length ? means[slot] : 0;
+    }
+
+    // population variance
+    public double variance(int slot) {
+        var count = count(slot);
+        return count == 0 ? 0 : m2s[slot] / count;
+    }
+
+    public double ewma(int slot) {
+        return slot < counts.length ? ewmas[slot] : 0;
+    }
+
+    public Stats get(int slot) {
+        if (count(slot) == 0) {
+            return Stats.EMPTY;
+        }
+        return new Stats(counts[slot], means[slot], variance(slot), ewmas[slot], mins[slot], maxes[slot]);
+    }
+
+    public void clear() {
+        Arrays.fill(counts, 0);
+        Arrays.fill(means, 0);
+        Arrays.fill(m2s, 0);
+    }
+
+    public void reset(int slot) {
+        if (slot < counts.length) {
+            counts[slot] = 0;
+            means[slot] = 0;
+            m2s[slot] = 0;
+        }
+    }
+
+    private void allocate(int capacity) {
+        counts = new long[capacity];
+        means = new double[capacity];
+        m2s = new double[capacity];
+        ewmas = new double[capacity];
+        mins = new int[capacity];
+        maxes = new int[capacity];
+    }
+
+    private void grow(int minCapacity) {
+        var capacity = Math.max(minCapacity, counts.length + (counts.length >> 1));
+        counts = Arrays.copyOf(counts, capacity);
+        means = Arrays.copyOf(means, capacity);
+        m2s = Arrays.copyOf(m2s, capacity);
+        ewmas = Arrays.copyOf(ewmas, capacity);
+        mins = Arrays.copyOf(mins, capacity);
+        maxes = Arrays.copyOf(maxes, capacity);
+    }
+}
@@ -0,0 +1,75 @@
+package domain;
+
+import java.util.Arrays;
+
+// Per-account last-N windows, one fixed ring of history sequence numbers per account slot.
+public class AccountWindows {
+    final int window;
+    long[] sequences;
+    int[] starts;
+    int[] counts;
+
+    public AccountWindows(int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("Window must be positive");
+        }
+        this.window = window;
+        sequences = new long[window * AccountAggregates.DEFAULT_CAPACITY];
+        starts = new int[AccountAggregates.DEFAULT_CAPACITY];
+        counts = new int[AccountAggregates.DEFAULT_CAPACITY];
+    }
+
+    public boolean isFull(int slot) {
+        return slot < counts.length && counts[slot] == window;
+    }
+
+    public boolean isEmpty(int slot) {
+        return slot >= counts.length || counts[slot] == 0;
+    }
+
+    public long oldest(int slot) {
+        return sequences[slot * window + starts[slot]];
+    }
+
+    public void removeOldest(int slot) {
+        starts[slot] = starts[slot] + 1 == window ? 0 : starts[slot] + 1;
+        counts[slot]--;
+    }
+
+    public void push(int slot, long sequence) {
+        if (slot >= counts.length) {
+            grow(slot + 1);
+        }
+
+        var index = starts[slot] + counts[slot];
+        if (index >= window) {
+            index -= window;
+        }
+        sequences[slot * window + index] = sequence;
+        counts[slot]++;
+    }
+
+    public int count(int slot) {
+        return slot < counts.length ? counts[slot] : 0;
+    }
+
+    public void clear() {
+        Arrays.fill(starts, 0);
+        Arrays.fill(counts, 0);
+    }
+
+    // the slot is about to belong to another account
+    public void reset(int slot) {
+        if (slot < counts.length) {
+            starts[slot] = 0;
+            counts[slot] = 0;
+        }
+    }
+
+    private void grow(int minSlots) {
+        var slots = Math.max(minSlots, counts.length + (counts.length >> 1));
+        sequences = Arrays.copyOf(sequences, Math.multiplyExact(slots, window));
+        starts = Arrays.copyOf(starts, slots);
+        counts = Arrays.copyOf(counts, slots);
+    }
+}
@@ -0,0 +1,9 @@
+package domain;
+
+public class ArithmeticPatternRule implements FraudRule {
+
+    @Override
+    public int score(TransactionEngine engine, int accountSlot, int amount, boolean isDebit) {
+        return engine.patternDetector.score();
+    }
+}
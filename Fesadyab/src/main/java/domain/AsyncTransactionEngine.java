@@ -0,0 +1,204 @@
+package domain;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Non-blocking facade over a TransactionEngine. Callers enqueue and get a future back; a
+// single writer (a virtual thread) owns the engine and drains the queue into micro-batches
+// of up to maxBatchSize, waiting at most maxBatchDelay after the first transaction of a
+// batch for more to arrive. Under light load a batch is one transaction and the delay is
+// only paid while the queue is empty; under heavy load batches fill up without waiting.
+//
+// Transactions are scored in queue order. With a write-ahead log, a future completes only
+// once its transaction is durable. A full queue fails the future with a
+// RejectedExecutionException instead of blocking the caller. Futures complete on the writer
+// thread (or the log's committer), so dependent stages that block should be attached with
+// the *Async variants.
+public class AsyncTransactionEngine implements AutoCloseable {
+    public static final int DEFAULT_QUEUE_CAPACITY = 1 << 16;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+    public static final Duration DEFAULT_MAX_BATCH_DELAY = Duration.ofNanos(200_000);
+
+    record Pending(Transaction transaction, CompletableFuture<Integer> result) {
+    }
+
+    final TransactionEngine engine;
+    final BlockingQueue<Pending> queue;
+    final int maxBatchSize;
+    final long maxBatchDelayNanos;
+    final Thread writer;
+    final AtomicLong batches = new AtomicLong();
+    final AtomicLong scored = new AtomicLong();
+    volatile boolean closed;
+
+    public AsyncTransactionEngine(TransactionEngine engine) {
+        this(engine, DEFAULT_QUEUE_CAPACITY, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_BATCH_DELAY);
+    }
+
+    public AsyncTransactionEngine(TransactionEngine engine, int queueCapacity, int maxBatchSize,
+                                  Duration maxBatchDelay) {
+        if (queueCapacity <= 0 || maxBatchSize <= 0 || maxBatchDelay.isNegative()) {
+            throw new IllegalArgumentException("Queue capacity and batch size must be positive, delay non-negative");
+        }
+
+        this.engine = engine;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchDelayNanos = maxBatchDelay.toNanos();
+        this.writer = Thread.ofVirtual().name("fraud-scoring-writer").start(this::drain);
+    }
+
+    public CompletableFuture<Integer> submit(Transaction txn) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Engine is closed"));
+        }
+
+        var pending = new Pending(txn, new CompletableFuture<>());
+        if (!queue.offer(pending)) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Scoring queue is full"));
+        }
+        // lost the race with close(): the writer may already have drained the queue, so wait
+        // for it to finish and fail whatever it left behind
+        if (closed && Thread.currentThread() != writer) {
+            awaitWriter();
+            if (queue.remove(pending)) {
+                pending.result().completeExceptionally(new RejectedExecutionException("Engine is closed"));
+            }
+        }
+        return pending.result();
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public long getScoredCount() {
+        return scored.get();
+    }
+
+    public double getAverageBatchSize() {
+        var count = batches.get();
+        return count == 0 ? 0 : (double) scored.get() / count;
+    }
+
+    // Stops accepting work, scores everything already queued and waits for the writer.
+    @Override
+    public void close() throws InterruptedException {
+        closed = true;
+        writer.join();
+    }
+
+    private void awaitWriter() {
+        var interrupted = false;
+        while (true) {
+            try {
+                writer.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        var batch = new ArrayList<Pending>(maxBatchSize);
+        var scores = new int[maxBatchSize];
+        try {
+            while (true) {
+                var first = queue.poll(10, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (closed && queue.isEmpty()) {
+                        return;
+                    }
+                    continue;
+                }
+
+                batch.add(first);
+                var deadline = System.nanoTime() + maxBatchDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    var next = queue.poll();
+                    if (next == null) {
+                        var remaining = deadline - System.nanoTime();
+                        if (remaining <= 0 || closed) {
+                            break;
+                        }
+                        next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                    }
+                    batch.add(next);
+                }
+
+                score(batch, scores);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            Pending pending;
+            while ((pending = queue.poll()) != null) {
+                pending.result().completeExceptionally(new RejectedExecutionException("Engine is closed"));
+            }
+        }
+    }
+
+    // Scores one transaction at a time, so a failure fails only the transaction that caused it;
+    // the ones before it were applied and logged and keep their scores.
+    private void score(ArrayList<Pending> batch, int[] scores) {
+        var applied = 0;
+        for (var i = 0; i < batch.size(); i++) {
+            var pending = batch.get(i);
+            try {
+                scores[i] = engine.addTransactionAndDetectFraud(pending.transaction());
+                applied++;
+            } catch (RuntimeException e) {
+                pending.result().completeExceptionally(e);
+            }
+        }
+
+        batches.getAndIncrement();
+        scored.getAndAdd(applied);
+        var wal = engine.writeAheadLog;
+        if (wal == null) {
+            for (var i = 0; i < batch.size(); i++) {
+                batch.get(i).result().complete(scores[i]);
+            }
+            return;
+        }
+
+        // the whole batch rides one group commit; nothing is acknowledged before it is durable,
+        // and one callback acknowledges in submission order
+        var results = new ArrayList<CompletableFuture<Integer>>(batch.size());
+        var acknowledged = new int[batch.size()];
+        for (var i = 0; i < batch.size(); i++) {
+            var result = batch.get(i).result();
+            if (!result.isDone()) {
+                acknowledged[results.size()] = scores[i];
+                results.add(result);
+            }
+        }
+        wal.commit().whenComplete((durableSize, failure) -> {
+            for (var i = 0; i < results.size(); i++) {
+                if (failure == null) {
+                    results.get(i).complete(acknowledged[i]);
+                } else {
+                    results.get(i).completeExceptionally(failure);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,92 @@
+package domain;
+
+import java.util.Arrays;
+
+// Bloom filter over int keys. Sized from the expected insertions and target false-positive
+// rate, with the bit count rounded up to a power of two so probes are a mask instead of a
+// division (which only lowers the real rate). Probes use double hashing of one 64-bit mix.
+public class BloomFilter {
+    static final int MAX_BITS_LOG2 = 36;
+
+    final long[] words;
+    final long bitMask;
+    final int hashCount;
+    final long expectedInsertions;
+
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0 || !(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("Expected insertions must be positive and the rate in (0, 1)");
+        }
+
+        var optimalBits = -expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        var bitsLog2 = Math.max(6, 64 - Long.numberOfLeadingZeros((long) Math.ceil(optimalBits) - 1));
+        if (bitsLog2 > MAX_BITS_LOG2) {
+            throw new IllegalArgumentException("Bloom filter would need more than 2^" + MAX_BITS_LOG2 + " bits");
+        }
+
+        var bits = 1L << bitsLog2;
+        this.words = new long[(int) (bits >>> 6)];
+        this.bitMask = bits - 1;
+        this.hashCount = Math.max(1, (int) Math.round((double) bits / expectedInsertions * Math.log(2)));
+        this.expectedInsertions = expectedInsertions;
+    }
+
+    public void put(int key) {
+        var hash = mix64(key);
+        var h1 = hash;
+        var h2 = (hash >>> 32) | 1;
+        for (var i = 0; i < hashCount; i++) {
+            var bit = h1 & bitMask;
+            words[(int) (bit >>> 6)] |= 1L << bit;
+            h1 += h2;
+        }
+    }
+
+    public boolean mightContain(int key) {
+        var hash = mix64(key);
+        var h1 = hash;
+        var h2 = (hash >>> 32) | 1;
+        for (var i = 0; i < hashCount; i++) {
+            var bit = h1 & bitMask;
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+            h1 += h2;
+        }
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(words, 0);
+    }
+
+    public long bitCount() {
+        return bitMask + 1;
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+
+    public long expectedInsertions() {
+        return expectedInsertions;
+    }
+
+    public long memoryBytes() {
+        return (long) Long.BYTES * words.length;
+    }
+
+    // the rate the filter should show once it holds `insertions` keys
+    public double expectedFalsePositiveRate(long insertions) {
+        return Math.pow(1 - Math.exp(-(double) hashCount * insertions / bitCount()), hashCount);
+    }
+
+    static long mix64(int key) {
+        var h = key * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+}
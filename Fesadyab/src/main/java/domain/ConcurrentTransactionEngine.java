@@ -0,0 +1,209 @@
+package domain;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Thread-safe variant of TransactionEngine. Dedup is striped by transactionId and
+// averages by accountId, so unrelated transactions never contend on the same lock.
+//
+// Ordering: every accepted transaction draws a global sequence number while it
+// holds both of its stripe locks, so per account the sequence order is the order the
+// averages saw. After releasing both locks, the pattern detector is advanced strictly in
+// sequence order (a ticket turnstile), so the result is identical to a single
+// TransactionEngine fed the accepted transactions in sequence order.
+//
+// The turnstile is global, so writers that each take a turn per transaction queue up on
+// it. A batch takes one turn for all of its transactions instead: it dedups them, locks
+// every account stripe it touches, draws a contiguous block of sequence numbers and
+// updates the averages, then releases the stripes and advances the pattern detector
+// over the whole block at once.
+//
+// A single transaction takes its id stripe, then its account stripe; a batch holds no id
+// stripe while it takes account stripes, and takes those in stripe order. Nobody waits for
+// a pattern turn while holding a lock, so a slow turn never stalls other stripes and the
+// scheme cannot deadlock.
+public class ConcurrentTransactionEngine {
+    static final int DEFAULT_STRIPES = 64;
+    static final int SPINS_BEFORE_YIELD = 64;
+
+    final int THRESHOLD = 1000;
+    final int stripeMask;
+    final ReentrantLock[] idLocks;
+    final TransactionIdSet[] idStripes;
+    final ReentrantLock[] accountLocks;
+    final AccountAggregates[] accountStripes;
+    final PatternDetector patternDetector;
+    final AtomicLong nextSequence;
+    volatile long patternTurn;
+
+    public ConcurrentTransactionEngine() {
+        this(DEFAULT_STRIPES);
+    }
+
+    public ConcurrentTransactionEngine(int stripes) {
+        if (stripes <= 0 || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Stripe count must be a positive power of two");
+        }
+
+        stripeMask = stripes - 1;
+        idLocks = new ReentrantLock[stripes];
+        idStripes = new TransactionIdSet[stripes];
+        accountLocks = new ReentrantLock[stripes];
+        accountStripes = new AccountAggregates[stripes];
+        for (var i = 0; i < stripes; i++) {
+            idLocks[i] = new ReentrantLock();
+            idStripes[i] = new TransactionIdSet();
+            accountLocks[i] = new ReentrantLock();
+            accountStripes[i] = new AccountAggregates();
+        }
+        patternDetector = new PatternDetector(THRESHOLD);
+        nextSequence = new AtomicLong();
+    }
+
+    public int addTransactionAndDetectFraud(Transaction txn) {
+        var idStripe = stripe(txn.transactionId);
+        var accountStripe = stripe(txn.accountId);
+
+        int fraudScore;
+        long sequence;
+        var idLock = idLocks[idStripe];
+        idLock.lock();
+        try {
+            if (!idStripes[idStripe].add(txn.transactionId)) {
+                return 0;
+            }
+
+            var accountLock = accountLocks[accountStripe];
+            accountLock.lock();
+            try {
+                var aggregates = accountStripes[accountStripe];
+                var averageAmount = aggregates.getAverage(txn.accountId);
+                fraudScore = TransactionEngine.excessiveDebitScore(txn.amount, txn.isDebit, averageAmount);
+                aggregates.add(txn.accountId, txn.amount);
+                sequence = nextSequence.getAndIncrement();
+            } finally {
+                accountLock.unlock();
+            }
+        } finally {
+            idLock.unlock();
+        }
+
+        var patternScore = advancePattern(sequence, txn.transactionId, txn.amount);
+        return fraudScore != 0 ? fraudScore : patternScore;
+    }
+
+    public int[] addTransactionsAndDetectFraud(List<Transaction> transactions) {
+        var count = transactions.size();
+        var scores = new int[count];
+        var accepted = new boolean[count];
+        var acceptedCount = 0;
+        // which copy of a shared id wins does not matter, only the order of the winners
+        for (var i = 0; i < count; i++) {
+            var transactionId = transactions.get(i).transactionId;
+            var idLock = idLocks[stripe(transactionId)];
+            idLock.lock();
+            try {
+                accepted[i] = idStripes[stripe(transactionId)].add(transactionId);
+            } finally {
+                idLock.unlock();
+            }
+            if (accepted[i]) {
+                acceptedCount++;
+            }
+        }
+        if (acceptedCount == 0) {
+            return scores;
+        }
+
+        var touched = new boolean[accountLocks.length];
+        for (var i = 0; i < count; i++) {
+            if (accepted[i]) {
+                touched[stripe(transactions.get(i).accountId)] = true;
+            }
+        }
+        long first;
+        for (var stripe = 0; stripe < touched.length; stripe++) {
+            if (touched[stripe]) {
+                accountLocks[stripe].lock();
+            }
+        }
+        try {
+            first = nextSequence.getAndAdd(acceptedCount);
+            for (var i = 0; i < count; i++) {
+                if (accepted[i]) {
+                    var txn = transactions.get(i);
+                    var aggregates = accountStripes[stripe(txn.accountId)];
+                    scores[i] = TransactionEngine.excessiveDebitScore(txn.amount, txn.isDebit,
+                            aggregates.getAverage(txn.accountId));
+                    aggregates.add(txn.accountId, txn.amount);
+                }
+            }
+        } finally {
+            for (var stripe = 0; stripe < touched.length; stripe++) {
+                if (touched[stripe]) {
+                    accountLocks[stripe].unlock();
+                }
+            }
+        }
+
+        awaitPatternTurn(first);
+        var sequence = first;
+        for (var i = 0; i < count; i++) {
+            if (accepted[i]) {
+                var txn = transactions.get(i);
+                var patternScore = acceptPattern(sequence++, txn.transactionId, txn.amount);
+                if (scores[i] == 0) {
+                    scores[i] = patternScore;
+                }
+            }
+        }
+        patternTurn = sequence;
+        return scores;
+    }
+
+    public int getAverageTransactionAmountByAccount(int accountId) {
+        var accountStripe = stripe(accountId);
+        var accountLock = accountLocks[accountStripe];
+        accountLock.lock();
+        try {
+            return accountStripes[accountStripe].getAverage(accountId);
+        } finally {
+            accountLock.unlock();
+        }
+    }
+
+    public long getHistorySize() {
+        return patternTurn;
+    }
+
+    private int advancePattern(long sequence, int transactionId, int amount) {
+        awaitPatternTurn(sequence);
+        var score = acceptPattern(sequence, transactionId, amount);
+        patternTurn = sequence + 1;
+        return score;
+    }
+
+    private void awaitPatternTurn(long sequence) {
+        var spins = 0;
+        while (patternTurn != sequence) {
+            if (++spins < SPINS_BEFORE_YIELD) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    // Runs once per accepted transaction, strictly in sequence order, so a subclass can
+    // observe the order the engine settled on.
+    int acceptPattern(long sequence, int transactionId, int amount) {
+        var score = patternDetector.score();
+        patternDetector.accept(amount);
+        return score;
+    }
+
+    private int stripe(int key) {
+        return AccountAggregates.mix(key) & stripeMask;
+    }
+}
@@ -0,0 +1,39 @@
+package domain;
+
+// Flags a debit more than `deviations` standard deviations above the account's mean, once
+// the account has at least `minSamples` transactions. Scores the excess over that bound.
+// Not part of the default pipeline; it needs EngineOptions.accountStatisticsEnabled.
+public class DeviationRule implements FraudRule {
+    public static final double DEFAULT_DEVIATIONS = 3.0;
+    public static final int DEFAULT_MIN_SAMPLES = 10;
+
+    final double deviations;
+    final int minSamples;
+
+    public DeviationRule() {
+        this(DEFAULT_DEVIATIONS, DEFAULT_MIN_SAMPLES);
+    }
+
+    public DeviationRule(double deviations, int minSamples) {
+        this.deviations = deviations;
+        this.minSamples = minSamples;
+    }
+
+    @Override
+    public void validate(EngineOptions options) {
+        if (!options.isAccountStatisticsEnabled()) {
+            throw new IllegalArgumentException("DeviationRule needs EngineOptions.accountStatisticsEnabled");
+        }
+    }
+
+    @Override
+    public int score(TransactionEngine engine, int accountSlot, int amount, boolean isDebit) {
+        var statistics = engine.accountStatistics;
+        if (!isDebit || accountSlot < 0 || statistics.count(accountSlot) < minSamples) {
+            return 0;
+        }
+
+        var bound = statistics.mean(accountSlot) + deviations * Math.sqrt(statistics.variance(accountSlot));
+        return amount > bound ? (int) Math.ceil(amount - bound) : 0;
+    }
+}
@@ -0,0 +1,54 @@
+package domain;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class EngineMetrics {
+    final LatencyHistogram total = new LatencyHistogram();
+    final LatencyHistogram dedup = new LatencyHistogram();
+    final AtomicLong accepted = new AtomicLong();
+    final AtomicLong duplicatesRejected = new AtomicLong();
+
+    public record StageLatency(long count, long p50, long p99, long p999, long max) {
+        static StageLatency of(LatencyHistogram histogram) {
+            return new StageLatency(histogram.getTotalCount(), histogram.getValueAtPercentile(50),
+                    histogram.getValueAtPercentile(99), histogram.getValueAtPercentile(99.9), histogram.getMaxValue());
+        }
+    }
+
+    public record RuleStats(String name, long evaluations, long hits, StageLatency latency) {
+    }
+
+    // latencies are in nanoseconds; rules are listed in priority order
+    public record Snapshot(long accepted, long duplicatesRejected, long historySize, StageLatency total,
+                           StageLatency dedup, List<RuleStats> rules) {
+
+        public RuleStats rule(String name) {
+            for (var rule : rules) {
+                if (rule.name().equals(name)) {
+                    return rule;
+                }
+            }
+            throw new IllegalArgumentException("No rule named " + name);
+        }
+    }
+
+    public Snapshot snapshot(long historySize, FraudRulePipeline pipeline) {
+        var rules = new ArrayList<RuleStats>(pipeline.size());
+        for (var i = 0; i < pipeline.size(); i++) {
+            var latency = pipeline.latencies == null ? new LatencyHistogram() : pipeline.latencies[i];
+            rules.add(new RuleStats(pipeline.getRule(i).name(), pipeline.getEvaluations(i), pipeline.getHits(i),
+                    StageLatency.of(latency)));
+        }
+        return new Snapshot(accepted.get(), duplicatesRejected.get(), historySize, StageLatency.of(total),
+                StageLatency.of(dedup), List.copyOf(rules));
+    }
+
+    public void reset() {
+        total.reset();
+        dedup.reset();
+        accepted.set(0);
+        duplicatesRejected.set(0);
+    }
+}
@@ -0,0 +1,34 @@
+package domain;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+public class EngineOptions {
+    public enum DedupMode {
+        EXACT,
+        // Bloom filter in front of a sorted id store, see TieredTransactionIdIndex
+        TIERED
+    }
+
+    RetentionPolicy retentionPolicy = RetentionPolicy.UNBOUNDED;
+    boolean metricsEnabled;
+    // in priority order; null keeps the built-in excessive-debit and pattern rules
+    List<FraudRule> fraudRules;
+    boolean accountStatisticsEnabled;
+    double ewmaAlpha = 0.1;
+    DedupMode dedupMode = DedupMode.EXACT;
+    long expectedTransactionIds = 1 << 20;
+    double dedupFalsePositiveRate = 0.01;
+    // lets other threads call the average, history size and pattern diff queries during ingest
+    boolean concurrentReadsEnabled;
+    boolean accountIndexEnabled;
+    int topDebitsPerAccount = 10;
+    // 256 buckets at 5% accuracy span every positive int amount in 1 KiB per account
+    boolean quantileSketchesEnabled;
+    int quantileSketchBuckets = 256;
+    double quantileSketchAccuracy = 0.05;
+}
@@ -0,0 +1,489 @@
+package domain;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.CompletionException;
+import java.util.function.IntConsumer;
+import java.util.zip.CRC32C;
+
+// Point-in-time image of a TransactionEngine's derived state, so a restart restores it with
+// a sequential read and then only replays the log records written after it:
+//   header      magic, version, flags, log sequence (first log record not covered), and
+//               for a write-ahead log the byte offset of that record's group, else -1
+//   detector    started/broken bits, previous amount, diff, threshold
+//   aggregates  the open-addressing table as is, then the dense account columns
+//   ids         the open-addressing key table as is, plus the id-0 flag, or for a tiered
+//               index the sorted ids
+//   history     (optional) first sequence and the columns in logical order
+//   statistics  (when the engine keeps them) the per-account statistic columns
+//   quantiles   (when the engine keeps them) sketch parameters and the Fenwick rows
+//   trailer     CRC32C of everything before it
+// Hash tables are stored raw rather than as entries, so restoring them is an array copy
+// and not a rehash. Per-account windows are rebuilt from the history. Both directions stream
+// through a 1 MiB buffer, so the file size is not bounded by a single array.
+public final class EngineSnapshot {
+    static final int MAGIC = 0x46534e50; // "FSNP"
+    static final int VERSION = 3;
+    static final int HISTORY = 1;
+    static final int STATISTICS = 2;
+    static final int QUANTILES = 4;
+    static final int RAW_ID_TABLE = 0;
+    static final int SORTED_IDS = 1;
+    static final int CHUNK = 1 << 20;
+
+    private EngineSnapshot() {
+    }
+
+    public static void write(TransactionEngine engine, Path path, boolean includeHistory) throws IOException {
+        if (!includeHistory && engine.options.getRetentionPolicy().isBounded()) {
+            throw new IllegalStateException("A bounded engine needs its history in the snapshot to keep evicting");
+        }
+        // the log tail the snapshot counts has to reach disk before the snapshot does
+        if (engine.transactionLog != null) {
+            engine.transactionLog.sync();
+        }
+        var logOffset = -1L;
+        if (engine.writeAheadLog != null) {
+            try {
+                engine.writeAheadLog.commit().join();
+            } catch (CompletionException e) {
+                throw new IOException("Write-ahead log failed before the snapshot", e.getCause());
+            }
+            var durable = engine.writeAheadLog.durablePosition();
+            if (durable.records() != engine.writeAheadLog.size()) {
+                throw new IllegalStateException("Write-ahead log was appended to during the snapshot");
+            }
+            logOffset = durable.offset();
+        }
+
+        var aggregates = engine.accountAggregates;
+        var ids = engine.transactionIds instanceof TransactionIdSet set ? set : null;
+        var idValues = ids == null ? sortedIds(engine.transactionIds) : ids.keys;
+        var history = engine.transactionHistory;
+        var historySize = includeHistory ? history.size() : 0;
+        var statistics = engine.accountStatistics;
+        // batches resolve slots up front, so a duplicate-only account may have no rows yet
+        var statisticsSlots = statistics == null ? 0 : Math.min(aggregates.size, statistics.counts.length);
+        var sketches = engine.quantileSketches;
+        var sketchSlots = sketches == null ? 0 : Math.min(aggregates.size, sketches.counts.length);
+
+        // write beside the target and rename, so a crash never leaves a torn snapshot behind
+        var temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (var channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            var out = new Output(channel);
+            out.putInt(MAGIC).putInt(VERSION).putInt((includeHistory ? HISTORY : 0)
+                    | (statistics == null ? 0 : STATISTICS) | (sketches == null ? 0 : QUANTILES));
+            out.putLong(engine.transactionLog != null ? engine.transactionLog.size()
+                    : engine.writeAheadLog != null ? engine.writeAheadLog.size() : history.nextSequence());
+            out.putLong(logOffset);
+
+            var detector = engine.patternDetector;
+            out.putInt((detector.started ? 1 : 0) | (detector.broken ? 2 : 0))
+                    .putInt(detector.previousAmount).putInt(detector.diff).putInt(detector.threshold);
+
+            out.putInt(aggregates.size).putInt(aggregates.tableKeys.length);
+            out.putInts(aggregates.tableKeys, aggregates.tableKeys.length);
+            out.putInts(aggregates.tableSlots, aggregates.tableSlots.length);
+            out.putInts(aggregates.accountIds, aggregates.size);
+            out.putLongs(aggregates.sums, aggregates.size);
+            out.putInts(aggregates.counts, aggregates.size);
+
+            out.putInt(ids == null ? SORTED_IDS : RAW_ID_TABLE).putInt(engine.transactionIds.size())
+                    .putInt(ids != null && ids.containsZero ? 1 : 0).putInt(idValues.length);
+            out.putInts(idValues, idValues.length);
+
+            out.putLong(includeHistory ? history.firstSequence() : history.nextSequence()).putInt(historySize);
+            for (var i = 0; i < historySize; i++) {
+                out.putInt(history.transactionId(i));
+            }
+            for (var i = 0; i < historySize; i++) {
+                out.putInt(history.accountId(i));
+            }
+            for (var i = 0; i < historySize; i++) {
+                out.putInt(history.amount(i));
+            }
+            for (var word = 0; word < (historySize + 63) >>> 6; word++) {
+                var bits = 0L;
+                for (var bit = 0; bit < 64 && word * 64 + bit < historySize; bit++) {
+                    if (history.isDebit(word * 64 + bit)) {
+                        bits |= 1L << bit;
+                    }
+                }
+                out.putLong(bits);
+            }
+
+            if (statistics != null) {
+                out.putInt(statisticsSlots);
+                out.putLongs(statistics.counts, statisticsSlots);
+                out.putDoubles(statistics.means, statisticsSlots);
+                out.putDoubles(statistics.m2s, statisticsSlots);
+                out.putDoubles(statistics.ewmas, statisticsSlots);
+                out.putInts(statistics.mins, statisticsSlots);
+                out.putInts(statistics.maxes, statisticsSlots);
+            }
+
+            if (sketches != null) {
+                out.putInt(sketches.buckets).putDouble(sketches.relativeAccuracy).putInt(sketchSlots);
+                out.putInts(sketches.trees, sketchSlots * sketches.buckets);
+                out.putInts(sketches.counts, sketchSlots);
+            }
+
+            out.finish();
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Loads the snapshot into a freshly constructed engine and returns the log position to
+    // resume replay from; its offset is -1 unless the engine had a write-ahead log.
+    static WriteAheadLog.Position restore(TransactionEngine engine, Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            verify(channel, path);
+            return restore(engine, new Input(channel, path));
+        }
+    }
+
+    private static WriteAheadLog.Position restore(TransactionEngine engine, Input in) throws IOException {
+        in.getInt();
+        if (in.getInt() != VERSION) {
+            throw new IOException("Unsupported snapshot version in " + in.path);
+        }
+        var flags = in.getInt();
+        var logSequence = in.getLong();
+        var logOffset = in.getLong();
+
+        var detector = engine.patternDetector;
+        var detectorFlags = in.getInt();
+        detector.started = (detectorFlags & 1) != 0;
+        detector.broken = (detectorFlags & 2) != 0;
+        detector.previousAmount = in.getInt();
+        detector.diff = in.getInt();
+        if (in.getInt() != detector.threshold) {
+            throw new IOException("Snapshot was taken with a different pattern threshold");
+        }
+
+        if ((flags & HISTORY) == 0 && engine.options.getRetentionPolicy().isBounded()) {
+            throw new IOException("Snapshot has no history, which a bounded engine needs for eviction");
+        }
+
+        var aggregates = engine.accountAggregates;
+        aggregates.size = in.getInt();
+        var tableLength = in.getInt();
+        aggregates.tableKeys = in.getInts(tableLength, tableLength);
+        aggregates.tableSlots = in.getInts(tableLength, tableLength);
+        var slots = Math.max(aggregates.size, AccountAggregates.DEFAULT_CAPACITY);
+        aggregates.accountIds = in.getInts(aggregates.size, slots);
+        aggregates.sums = in.getLongs(aggregates.size, slots);
+        aggregates.counts = in.getInts(aggregates.size, slots);
+        aggregates.rebuildFreeSlots();
+
+        var idKind = in.getInt();
+        var idCount = in.getInt();
+        var containsZero = in.getInt() != 0;
+        var idLength = in.getInt();
+        var idValues = in.getInts(idLength, idLength);
+        if (idKind == RAW_ID_TABLE && engine.transactionIds instanceof TransactionIdSet ids) {
+            ids.size = idCount;
+            ids.containsZero = containsZero;
+            ids.keys = idValues;
+        } else if (idKind == SORTED_IDS && engine.transactionIds instanceof TieredTransactionIdIndex tiered) {
+            tiered.load(idValues);
+        } else {
+            // the snapshot came from an engine with the other dedup mode
+            var index = engine.transactionIds;
+            index.ensureCapacity(idCount);
+            if (containsZero) {
+                index.add(0);
+            }
+            for (var id : idValues) {
+                if (id != 0 || idKind == SORTED_IDS) {
+                    index.add(id);
+                }
+            }
+        }
+
+        var firstSequence = in.getLong();
+        var historySize = in.getInt();
+        var history = new TransactionHistory(historySize);
+        history.transactionIds = in.getInts(historySize, history.capacity());
+        history.accountIds = in.getInts(historySize, history.capacity());
+        history.amounts = in.getInts(historySize, history.capacity());
+        in.getLongs(history.debits, (historySize + 63) >>> 6);
+        history.size = historySize;
+        history.firstSequence = firstSequence;
+        engine.transactionHistory = history;
+
+        if (engine.accountStatistics != null) {
+            if ((flags & STATISTICS) == 0) {
+                throw new IOException("Snapshot was taken without account statistics");
+            }
+            var statistics = engine.accountStatistics;
+            var statisticsSlots = in.getInt();
+            var capacity = Math.max(statisticsSlots, AccountStatistics.DEFAULT_CAPACITY);
+            statistics.counts = in.getLongs(statisticsSlots, capacity);
+            statistics.means = in.getDoubles(statisticsSlots, capacity);
+            statistics.m2s = in.getDoubles(statisticsSlots, capacity);
+            statistics.ewmas = in.getDoubles(statisticsSlots, capacity);
+            statistics.mins = in.getInts(statisticsSlots, capacity);
+            statistics.maxes = in.getInts(statisticsSlots, capacity);
+        } else if ((flags & STATISTICS) != 0) {
+            in.skip(40L * in.getInt());
+        }
+
+        if (engine.quantileSketches != null) {
+            var sketches = engine.quantileSketches;
+            if ((flags & QUANTILES) == 0 || in.getInt() != sketches.buckets
+                    || in.getDouble() != sketches.relativeAccuracy) {
+                throw new IOException("Snapshot has no quantile sketches with this engine's bucket count and accuracy");
+            }
+            var sketchSlots = in.getInt();
+            var capacity = Math.max(sketchSlots, AccountQuantileSketches.DEFAULT_CAPACITY);
+            sketches.trees = in.getInts(sketchSlots * sketches.buckets, capacity * sketches.buckets);
+            sketches.counts = in.getInts(sketchSlots, capacity);
+        }
+
+        if (engine.accountWindows != null) {
+            for (var i = 0; i < historySize; i++) {
+                var slot = aggregates.find(history.accountId(i));
+                if (engine.accountWindows.isFull(slot)) {
+                    engine.accountWindows.removeOldest(slot);
+                }
+                engine.accountWindows.push(slot, firstSequence + i);
+            }
+        }
+
+        if (engine.accountIndex != null) {
+            engine.rebuildAccountIndex();
+        }
+        return new WriteAheadLog.Position(logOffset, logSequence);
+    }
+
+    private static int[] sortedIds(TransactionIdIndex index) {
+        var ids = new int[index.size()];
+        index.forEach(new IntConsumer() {
+            int next;
+
+            @Override
+            public void accept(int id) {
+                ids[next++] = id;
+            }
+        });
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    // Checks the trailer against a streaming CRC of the payload before anything is parsed.
+    private static void verify(FileChannel channel, Path path) throws IOException {
+        var payload = channel.size() - 4;
+        if (payload < 4 * 3 + 8 * 2) {
+            throw new IOException("Not an engine snapshot: " + path);
+        }
+        var buffer = ByteBuffer.allocate(CHUNK);
+        var crc = new CRC32C();
+        for (var position = 0L; position < payload; position += buffer.limit()) {
+            buffer.clear().limit((int) Math.min(CHUNK, payload - position));
+            readFully(channel, buffer, position, path);
+            if (position == 0 && buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not an engine snapshot: " + path);
+            }
+            crc.update(buffer.array(), 0, buffer.limit());
+        }
+        buffer.clear().limit(4);
+        readFully(channel, buffer, payload, path);
+        if ((int) crc.getValue() != buffer.getInt(0)) {
+            throw new IOException("Snapshot checksum mismatch: " + path);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position, Path path)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Snapshot is truncated: " + path);
+            }
+        }
+        buffer.flip();
+    }
+
+    // Serializes through one fixed-size buffer, so a snapshot never needs a second copy of
+    // the engine on the heap; the CRC covers each chunk as it is flushed.
+    private static final class Output {
+        final FileChannel channel;
+        final ByteBuffer buffer = ByteBuffer.allocate(CHUNK);
+        final CRC32C crc = new CRC32C();
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        Output putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+            return this;
+        }
+
+        Output putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+            return this;
+        }
+
+        Output putDouble(double value) throws IOException {
+            ensure(8);
+            buffer.putDouble(value);
+            return this;
+        }
+
+        void putInts(int[] values, int length) throws IOException {
+            for (var from = 0; from < length; ) {
+                ensure(4);
+                var count = Math.min(length - from, buffer.remaining() / 4);
+                buffer.asIntBuffer().put(values, from, count);
+                buffer.position(buffer.position() + 4 * count);
+                from += count;
+            }
+        }
+
+        void putLongs(long[] values, int length) throws IOException {
+            for (var from = 0; from < length; ) {
+                ensure(8);
+                var count = Math.min(length - from, buffer.remaining() / 8);
+                buffer.asLongBuffer().put(values, from, count);
+                buffer.position(buffer.position() + 8 * count);
+                from += count;
+            }
+        }
+
+        void putDoubles(double[] values, int length) throws IOException {
+            for (var from = 0; from < length; ) {
+                ensure(8);
+                var count = Math.min(length - from, buffer.remaining() / 8);
+                buffer.asDoubleBuffer().put(values, from, count);
+                buffer.position(buffer.position() + 8 * count);
+                from += count;
+            }
+        }
+
+        // Flushes the rest and appends the CRC32C trailer.
+        void finish() throws IOException {
+            flush();
+            buffer.putInt((int) crc.getValue());
+            drain();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            crc.update(buffer.array(), 0, buffer.position());
+            drain();
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    // Parses sequentially through one fixed-size buffer, refilled from the channel as needed.
+    private static final class Input {
+        final FileChannel channel;
+        final Path path;
+        final ByteBuffer buffer = ByteBuffer.allocate(CHUNK).limit(0);
+
+        Input(FileChannel channel, Path path) {
+            this.channel = channel;
+            this.path = path;
+        }
+
+        int getInt() throws IOException {
+            ensure(4);
+            return buffer.getInt();
+        }
+
+        long getLong() throws IOException {
+            ensure(8);
+            return buffer.getLong();
+        }
+
+        double getDouble() throws IOException {
+            ensure(8);
+            return buffer.getDouble();
+        }
+
+        int[] getInts(int length, int capacity) throws IOException {
+            var values = new int[capacity];
+            for (var from = 0; from < length; ) {
+                ensure(4);
+                var count = Math.min(length - from, buffer.remaining() / 4);
+                buffer.asIntBuffer().get(values, from, count);
+                buffer.position(buffer.position() + 4 * count);
+                from += count;
+            }
+            return values;
+        }
+
+        long[] getLongs(int length, int capacity) throws IOException {
+            var values = new long[capacity];
+            getLongs(values, length);
+            return values;
+        }
+
+        void getLongs(long[] values, int length) throws IOException {
+            for (var from = 0; from < length; ) {
+                ensure(8);
+                var count = Math.min(length - from, buffer.remaining() / 8);
+                buffer.asLongBuffer().get(values, from, count);
+                buffer.position(buffer.position() + 8 * count);
+                from += count;
+            }
+        }
+
+        double[] getDoubles(int length, int capacity) throws IOException {
+            var values = new double[capacity];
+            for (var from = 0; from < length; ) {
+                ensure(8);
+                var count = Math.min(length - from, buffer.remaining() / 8);
+                buffer.asDoubleBuffer().get(values, from, count);
+                buffer.position(buffer.position() + 8 * count);
+                from += count;
+            }
+            return values;
+        }
+
+        void skip(long bytes) throws IOException {
+            while (bytes > buffer.remaining()) {
+                bytes -= buffer.remaining();
+                buffer.position(buffer.limit());
+                ensure(1);
+            }
+            buffer.position(buffer.position() + (int) bytes);
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Snapshot is truncated: " + path);
+                }
+            }
+            buffer.flip();
+        }
+    }
+}
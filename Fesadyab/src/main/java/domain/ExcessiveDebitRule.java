@@ -0,0 +1,10 @@
+package domain;
+
+public class ExcessiveDebitRule implements FraudRule {
+
+    @Override
+    public int score(TransactionEngine engine, int accountSlot, int amount, boolean isDebit) {
+        var averageAmount = accountSlot < 0 ? 0 : engine.accountAggregates.average(accountSlot);
+        return TransactionEngine.excessiveDebitScore(amount, isDebit, averageAmount);
+    }
+}
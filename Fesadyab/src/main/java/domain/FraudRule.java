@@ -0,0 +1,22 @@
+package domain;
+
+// A scoring rule over the engine's state before the transaction is appended. A rule
+// returns 0 when it does not fire and must not change the engine: what-if scoring runs
+// rules from many threads. accountSlot is -1 for an account the engine has never seen.
+// cost() is a relative estimate that the pipeline uses to decide evaluation order until
+// it has measured the rule itself.
+public interface FraudRule {
+    int score(TransactionEngine engine, int accountSlot, int amount, boolean isDebit);
+
+    // Called once when an engine is built; throws if the options leave out state the rule reads.
+    default void validate(EngineOptions options) {
+    }
+
+    default double cost() {
+        return 1.0;
+    }
+
+    default String name() {
+        return getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,163 @@
+package domain;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Rules are given in priority order and the first one (by priority) that fires decides the
+// score, exactly like the old excessive-debit-then-pattern fallback. Evaluation order is a
+// different matter: rules run cheapest-per-hit first, and once a rule has fired every rule
+// of lower priority is skipped. Higher-priority rules still run, since they would win.
+public class FraudRulePipeline {
+    static final int REORDER_INTERVAL = 4096;
+
+    final FraudRule[] rules;
+    final long[] evaluations;
+    final long[] hits;
+    final int[] order;
+    LatencyHistogram[] latencies;
+    int sinceReorder;
+    int lastFired = -1;
+
+    public FraudRulePipeline(List<FraudRule> rules) {
+        if (rules.isEmpty()) {
+            throw new IllegalArgumentException("Pipeline needs at least one rule");
+        }
+        this.rules = rules.toArray(new FraudRule[0]);
+        evaluations = new long[this.rules.length];
+        hits = new long[this.rules.length];
+        order = new int[this.rules.length];
+        for (var i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        reorder();
+    }
+
+    public static FraudRulePipeline defaultRules() {
+        return new FraudRulePipeline(List.of(new ExcessiveDebitRule(), new ArithmeticPatternRule()));
+    }
+
+    public void validate(EngineOptions options) {
+        for (var rule : rules) {
+            rule.validate(options);
+        }
+    }
+
+    public int score(TransactionEngine engine, int accountSlot, int amount, boolean isDebit) {
+        var fired = rules.length;
+        var fraudScore = 0;
+        for (var rule : order) {
+            if (rule > fired) {
+                continue;
+            }
+
+            evaluations[rule]++;
+            var score = latencies == null
+                    ? rules[rule].score(engine, accountSlot, amount, isDebit)
+                    : timedScore(rule, engine, accountSlot, amount, isDebit);
+            if (score != 0) {
+                hits[rule]++;
+                fired = rule;
+                fraudScore = score;
+                if (rule == 0) {
+                    break;
+                }
+            }
+        }
+
+        lastFired = fired == rules.length ? -1 : fired;
+        if (++sinceReorder == REORDER_INTERVAL) {
+            reorder();
+        }
+        return fraudScore;
+    }
+
+    // Priority-order evaluation that leaves the statistics and evaluation order untouched,
+    // so any number of threads can run it alongside score().
+    public int evaluate(TransactionEngine engine, int accountSlot, int amount, boolean isDebit) {
+        for (var rule : rules) {
+            var score = rule.score(engine, accountSlot, amount, isDebit);
+            if (score != 0) {
+                return score;
+            }
+        }
+        return 0;
+    }
+
+    private int timedScore(int rule, TransactionEngine engine, int accountSlot, int amount, boolean isDebit) {
+        var start = System.nanoTime();
+        var score = rules[rule].score(engine, accountSlot, amount, isDebit);
+        latencies[rule].record(System.nanoTime() - start);
+        return score;
+    }
+
+    // Expected cost of running a rule per hit it produces; the hit rate is smoothed so a
+    // rule that has never been evaluated is neither starved nor favoured.
+    double rank(int rule) {
+        var cost = rules[rule].cost();
+        if (latencies != null && latencies[rule].getTotalCount() > 0) {
+            cost = Math.max(1, latencies[rule].getValueAtPercentile(50));
+        }
+        var hitRate = (hits[rule] + 1.0) / (evaluations[rule] + 2.0);
+        return cost / hitRate;
+    }
+
+    void reorder() {
+        sinceReorder = 0;
+        var ranks = new double[rules.length];
+        for (var i = 0; i < rules.length; i++) {
+            ranks[i] = rank(i);
+        }
+        // insertion sort: a handful of rules, and a stable order keeps ties in priority order
+        for (var i = 1; i < order.length; i++) {
+            var rule = order[i];
+            var j = i - 1;
+            while (j >= 0 && (ranks[order[j]] > ranks[rule] || ranks[order[j]] == ranks[rule] && order[j] > rule)) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = rule;
+        }
+    }
+
+    void instrument() {
+        latencies = new LatencyHistogram[rules.length];
+        for (var i = 0; i < rules.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    public int size() {
+        return rules.length;
+    }
+
+    public FraudRule getRule(int index) {
+        return rules[index];
+    }
+
+    public long getEvaluations(int index) {
+        return evaluations[index];
+    }
+
+    public long getHits(int index) {
+        return hits[index];
+    }
+
+    public int getLastFired() {
+        return lastFired;
+    }
+
+    public int[] getEvaluationOrder() {
+        return order.clone();
+    }
+
+    public void resetStatistics() {
+        Arrays.fill(evaluations, 0);
+        Arrays.fill(hits, 0);
+        if (latencies != null) {
+            for (var latency : latencies) {
+                latency.reset();
+            }
+        }
+        reorder();
+    }
+}
@@ -0,0 +1,10 @@
+package domain;
+
+public enum FsyncPolicy {
+    // leave flushing to the OS page cache; survives a process crash, not a power loss
+    NEVER,
+    // force a segment to disk when it is sealed and on close
+    ON_ROLL,
+    // force every record as it is appended
+    EVERY_RECORD
+}
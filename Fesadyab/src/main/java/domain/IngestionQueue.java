@@ -0,0 +1,233 @@
+package domain;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Bounded multi-producer, single-consumer stage in front of a TransactionEngine. Producers
+// claim a slot in a preallocated ring (one column per field, so nothing is allocated per
+// offer), fill it and publish it; one consumer thread drains published slots in batches of
+// up to maxBatchSize, scores them in offer order and hands every score to the callback. The
+// engine is only ever touched by the consumer, so its hot loop stays on one warm core.
+//
+// When the ring is full the overflow policy decides: BLOCK waits for room, FAIL_FAST throws a
+// RejectedExecutionException and DROP discards the transaction and counts it. Only waiting
+// offers are timed, so the fast path never reads the clock.
+public class IngestionQueue implements AutoCloseable {
+    public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+    // set in tail once closed, so no producer can claim a slot the consumer will not drain
+    static final long CLOSED = 1L << 62;
+    static final int SPINS_BEFORE_YIELD = 64;
+    static final int YIELDS_BEFORE_PARK = 64;
+    static final long PARK_NANOS = 50_000;
+
+    public enum OverflowPolicy {
+        BLOCK,
+        FAIL_FAST,
+        DROP
+    }
+
+    @FunctionalInterface
+    public interface ScoreCallback {
+        void accept(int transactionId, int accountId, int amount, boolean isDebit, int score);
+    }
+
+    public record Stats(int depth, int capacity, long consumed, long batches, long rejected, long dropped,
+                        long blockedOffers, EngineMetrics.StageLatency blockedWait) {
+    }
+
+    final TransactionEngine engine;
+    final OverflowPolicy policy;
+    final int maxBatchSize;
+    final ScoreCallback callback;
+    final int capacity;
+    final int mask;
+    final int[] transactionIds;
+    final int[] accountIds;
+    final int[] amounts;
+    final boolean[] debits;
+    // sequence + 1 once the slot holding that sequence is published
+    final AtomicLongArray published;
+    final AtomicLong tail = new AtomicLong();
+    final AtomicLong head = new AtomicLong();
+    final AtomicLong consumed = new AtomicLong();
+    final AtomicLong batches = new AtomicLong();
+    final AtomicLong rejected = new AtomicLong();
+    final AtomicLong dropped = new AtomicLong();
+    final LatencyHistogram blockedWait = new LatencyHistogram();
+    final Thread consumer;
+    volatile boolean consumerParked;
+    volatile RuntimeException failure;
+
+    public IngestionQueue(TransactionEngine engine, int capacity, OverflowPolicy policy, ScoreCallback callback) {
+        this(engine, capacity, policy, DEFAULT_MAX_BATCH_SIZE, callback);
+    }
+
+    public IngestionQueue(TransactionEngine engine, int capacity, OverflowPolicy policy, int maxBatchSize,
+                          ScoreCallback callback) {
+        if (capacity <= 0 || capacity > 1 << 30 || maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30 and batch size positive");
+        }
+
+        this.engine = engine;
+        this.policy = policy;
+        this.maxBatchSize = maxBatchSize;
+        this.callback = callback;
+        var size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.capacity = size;
+        this.mask = size - 1;
+        transactionIds = new int[size];
+        accountIds = new int[size];
+        amounts = new int[size];
+        debits = new boolean[size];
+        published = new AtomicLongArray(size);
+        consumer = Thread.ofPlatform().name("fesadyab-ingest").start(this::consume);
+    }
+
+    public boolean offer(Transaction txn) {
+        return offer(txn.transactionId, txn.accountId, txn.amount, txn.isDebit);
+    }
+
+    // Returns false only under DROP when the ring is full.
+    public boolean offer(int transactionId, int accountId, int amount, boolean isDebit) {
+        var sequence = claim();
+        if (sequence < 0) {
+            switch (policy) {
+                case FAIL_FAST -> {
+                    rejected.getAndIncrement();
+                    throw new RejectedExecutionException("Ingestion queue is full");
+                }
+                case DROP -> {
+                    dropped.getAndIncrement();
+                    return false;
+                }
+                case BLOCK -> sequence = awaitClaim();
+            }
+        }
+
+        var index = (int) sequence & mask;
+        transactionIds[index] = transactionId;
+        accountIds[index] = accountId;
+        amounts[index] = amount;
+        debits[index] = isDebit;
+        published.setRelease(index, sequence + 1);
+        if (consumerParked) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    public int getQueueDepth() {
+        return (int) Math.max(0, (tail.get() & ~CLOSED) - head.get());
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public Stats getStats() {
+        return new Stats(getQueueDepth(), capacity, consumed.get(), batches.get(), rejected.get(), dropped.get(),
+                blockedWait.getTotalCount(), EngineMetrics.StageLatency.of(blockedWait));
+    }
+
+    // Stops accepting offers, scores everything already queued and waits for the consumer.
+    @Override
+    public void close() throws InterruptedException {
+        markClosed();
+        LockSupport.unpark(consumer);
+        consumer.join();
+    }
+
+    // Returns the claimed sequence, or -1 when the ring is full.
+    private long claim() {
+        while (true) {
+            var t = tail.get();
+            if ((t & CLOSED) != 0) {
+                var cause = failure;
+                throw cause == null
+                        ? new RejectedExecutionException("Ingestion queue is closed")
+                        : new RejectedExecutionException("Ingestion queue consumer failed", cause);
+            }
+            if (t - head.get() >= capacity) {
+                return -1;
+            }
+            if (tail.compareAndSet(t, t + 1)) {
+                return t;
+            }
+        }
+    }
+
+    private long awaitClaim() {
+        var start = System.nanoTime();
+        for (var attempt = 0; ; attempt++) {
+            if (attempt < SPINS_BEFORE_YIELD) {
+                Thread.onSpinWait();
+            } else if (attempt < SPINS_BEFORE_YIELD + YIELDS_BEFORE_PARK) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+
+            var sequence = claim();
+            if (sequence >= 0) {
+                blockedWait.record(System.nanoTime() - start);
+                return sequence;
+            }
+        }
+    }
+
+    private void markClosed() {
+        var t = tail.get();
+        while ((t & CLOSED) == 0 && !tail.compareAndSet(t, t | CLOSED)) {
+            t = tail.get();
+        }
+    }
+
+    private void consume() {
+        var next = head.get();
+        try {
+            while (true) {
+                var end = next;
+                while (end - next < maxBatchSize && published.getAcquire((int) end & mask) == end + 1) {
+                    var index = (int) end & mask;
+                    var transactionId = transactionIds[index];
+                    var accountId = accountIds[index];
+                    var amount = amounts[index];
+                    var isDebit = debits[index];
+                    var score = engine.addAndScore(transactionId, accountId, amount, isDebit);
+                    if (callback != null) {
+                        callback.accept(transactionId, accountId, amount, isDebit, score);
+                    }
+                    end++;
+                }
+
+                if (end != next) {
+                    // freeing the whole batch at once keeps producers off the consumer's cache line
+                    head.set(end);
+                    consumed.getAndAdd(end - next);
+                    batches.getAndIncrement();
+                    next = end;
+                    continue;
+                }
+
+                var t = tail.get();
+                if ((t & CLOSED) != 0 && (t & ~CLOSED) == next) {
+                    return;
+                }
+                consumerParked = true;
+                if (published.getAcquire((int) next & mask) != next + 1 && (tail.get() & CLOSED) == 0) {
+                    LockSupport.parkNanos(PARK_NANOS);
+                }
+                consumerParked = false;
+            }
+        } catch (RuntimeException e) {
+            failure = e;
+            markClosed();
+            throw e;
+        }
+    }
+}
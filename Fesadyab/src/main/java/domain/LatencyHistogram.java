@@ -0,0 +1,98 @@
+package domain;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Log-linear histogram in the HDR style: values below 64 are exact, above that every power
+// of two is split into 32 sub-buckets, so any recorded value is kept within ~3%.
+// Recording is lock-free and allocation-free; reads may see a recording in progress.
+public class LatencyHistogram {
+    static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    final AtomicLongArray counts;
+    final AtomicLong totalCount;
+    final AtomicLong maxValue;
+
+    public LatencyHistogram() {
+        counts = new AtomicLongArray(BUCKETS);
+        totalCount = new AtomicLong();
+        maxValue = new AtomicLong();
+    }
+
+    public void record(long value) {
+        counts.getAndIncrement(indexOf(value));
+        totalCount.getAndIncrement();
+        var max = maxValue.get();
+        while (value > max && !maxValue.weakCompareAndSetVolatile(max, value)) {
+            max = maxValue.get();
+        }
+    }
+
+    public long getTotalCount() {
+        return totalCount.get();
+    }
+
+    public long getMaxValue() {
+        return maxValue.get();
+    }
+
+    public long getValueAtPercentile(double percentile) {
+        var total = totalCount.get();
+        if (total == 0) {
+            return 0;
+        }
+
+        var target = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        var seen = 0L;
+        var max = maxValue.get();
+        for (var i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestEquivalentValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    public void add(LatencyHistogram other) {
+        for (var i = 0; i < BUCKETS; i++) {
+            var count = other.counts.get(i);
+            if (count != 0) {
+                counts.getAndAdd(i, count);
+            }
+        }
+        totalCount.getAndAdd(other.totalCount.get());
+        var otherMax = other.maxValue.get();
+        var max = maxValue.get();
+        while (otherMax > max && !maxValue.weakCompareAndSetVolatile(max, otherMax)) {
+            max = maxValue.get();
+        }
+    }
+
+    public void reset() {
+        for (var i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        maxValue.set(0);
+    }
+
+    static int indexOf(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) Math.max(value, 0);
+        }
+        var shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        var shift = index / SUB_BUCKETS - 1;
+        var subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1L) << shift) - 1;
+    }
+}
@@ -0,0 +1,50 @@
+package domain;
+
+// Streaming form of the history rescan: the first transaction seeds "previous",
+// the first above-threshold transaction after it fixes the diff, and any later
+// above-threshold transaction with a different diff clears the pattern for good.
+public class PatternDetector {
+    final int threshold;
+    boolean started;
+    boolean broken;
+    int previousAmount;
+    int diff;
+
+    public PatternDetector(int threshold) {
+        this.threshold = threshold;
+    }
+
+    public void accept(int amount) {
+        if (!started) {
+            started = true;
+            previousAmount = amount;
+            return;
+        }
+
+        if (broken || amount <= threshold) {
+            return;
+        }
+
+        if (diff == 0) {
+            diff = amount - previousAmount;
+            previousAmount = amount;
+        } else if (diff != amount - previousAmount) {
+            broken = true;
+        }
+    }
+
+    public int score() {
+        return broken ? 0 : diff;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public void reset() {
+        started = false;
+        broken = false;
+        previousAmount = 0;
+        diff = 0;
+    }
+}
@@ -0,0 +1,48 @@
+package domain;
+
+// Flags a debit above the given percentile of the account's live amounts, scoring the
+// excess, once the account has at least `minSamples` transactions. Unlike the 2x mean
+// check a few huge past amounts barely move the bound. Not part of the default
+// pipeline; it needs EngineOptions.quantileSketchesEnabled.
+public class PercentileDebitRule implements FraudRule {
+    public static final double DEFAULT_PERCENTILE = 99;
+    public static final int DEFAULT_MIN_SAMPLES = 100;
+
+    final double quantile;
+    final int minSamples;
+
+    public PercentileDebitRule() {
+        this(DEFAULT_PERCENTILE, DEFAULT_MIN_SAMPLES);
+    }
+
+    public PercentileDebitRule(double percentile, int minSamples) {
+        if (!(percentile > 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("Percentile must be in (0, 100]");
+        }
+        this.quantile = percentile / 100;
+        this.minSamples = minSamples;
+    }
+
+    @Override
+    public void validate(EngineOptions options) {
+        if (!options.isQuantileSketchesEnabled()) {
+            throw new IllegalArgumentException("PercentileDebitRule needs EngineOptions.quantileSketchesEnabled");
+        }
+    }
+
+    @Override
+    public int score(TransactionEngine engine, int accountSlot, int amount, boolean isDebit) {
+        var sketches = engine.quantileSketches;
+        if (!isDebit || accountSlot < 0 || sketches.count(accountSlot) < minSamples) {
+            return 0;
+        }
+
+        var bound = sketches.quantile(accountSlot, quantile);
+        return amount > bound ? (int) Math.ceil(amount - bound) : 0;
+    }
+
+    @Override
+    public double cost() {
+        return 2.0;
+    }
+}
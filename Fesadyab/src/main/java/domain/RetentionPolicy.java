@@ -0,0 +1,30 @@
+package domain;
+
+// 0 means unlimited for either bound. maxTransactions caps the retained history as a whole;
+// maxPerAccount keeps only each account's last N transactions in its averages. Ids stay in
+// dedup until their transaction leaves the history, so a per-account window only bounds
+// memory together with maxTransactions and is rejected without it.
+public record RetentionPolicy(int maxTransactions, int maxPerAccount) {
+    public static final RetentionPolicy UNBOUNDED = new RetentionPolicy(0, 0);
+
+    public RetentionPolicy {
+        if (maxTransactions < 0 || maxPerAccount < 0) {
+            throw new IllegalArgumentException("Retention bounds must not be negative");
+        }
+        if (maxPerAccount > 0 && maxTransactions == 0) {
+            throw new IllegalArgumentException("A per-account window needs a maxTransactions bound");
+        }
+    }
+
+    public static RetentionPolicy maxTransactions(int maxTransactions) {
+        return new RetentionPolicy(maxTransactions, 0);
+    }
+
+    public static RetentionPolicy lastPerAccount(int maxPerAccount, int maxTransactions) {
+        return new RetentionPolicy(maxTransactions, maxPerAccount);
+    }
+
+    public boolean isBounded() {
+        return maxTransactions > 0 || maxPerAccount > 0;
+    }
+}
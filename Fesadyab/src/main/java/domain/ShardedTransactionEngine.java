@@ -0,0 +1,189 @@
+package domain;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
+
+// Scores batches on N shards that each own a partition of transaction ids (for dedup) and
+// a partition of accounts (for averages). A batch runs in three phases:
+//   1. dedup, in parallel per id partition; only earlier copies of the same id matter,
+//   2. the sequencer walks the accepted transactions in batch order, assigning global
+//      sequence numbers and advancing the above-threshold pattern detector,
+//   3. excessive-debit scoring, in parallel per account partition, in sequence order
+//      within each account; the pattern score from phase 2 fills in where it is 0.
+// Every input a score depends on is computed in global order, so results are identical
+// to a single TransactionEngine fed the same stream.
+public class ShardedTransactionEngine {
+    final int THRESHOLD = 1000;
+    final Shard[] shards;
+    final int shardMask;
+    final PatternDetector patternDetector;
+    final ForkJoinPool pool;
+    long nextSequence;
+
+    static class Shard {
+        final TransactionIdSet transactionIds = new TransactionIdSet();
+        final AccountAggregates accountAggregates = new AccountAggregates();
+    }
+
+    public ShardedTransactionEngine(int shardCount) {
+        this(shardCount, ForkJoinPool.commonPool());
+    }
+
+    public ShardedTransactionEngine(int shardCount, ForkJoinPool pool) {
+        if (shardCount <= 0 || Integer.bitCount(shardCount) != 1) {
+            throw new IllegalArgumentException("Shard count must be a positive power of two");
+        }
+
+        shards = new Shard[shardCount];
+        for (var i = 0; i < shardCount; i++) {
+            shards[i] = new Shard();
+        }
+        shardMask = shardCount - 1;
+        patternDetector = new PatternDetector(THRESHOLD);
+        this.pool = pool;
+    }
+
+    public int addTransactionAndDetectFraud(Transaction txn) {
+        var idShard = shards[shardOf(txn.transactionId)];
+        if (!idShard.transactionIds.add(txn.transactionId)) {
+            return 0;
+        }
+
+        var patternScore = patternDetector.score();
+        patternDetector.accept(txn.amount);
+        nextSequence++;
+
+        var accountShard = shards[shardOf(txn.accountId)];
+        var fraudScore = score(accountShard, txn.accountId, txn.amount, txn.isDebit);
+        return fraudScore != 0 ? fraudScore : patternScore;
+    }
+
+    public int[] addTransactionsAndDetectFraud(List<Transaction> transactions) {
+        var count = transactions.size();
+        var ids = new int[count];
+        var accounts = new int[count];
+        var amounts = new int[count];
+        var debits = new boolean[count];
+
+        for (var i = 0; i < count; i++) {
+            var txn = transactions.get(i);
+            ids[i] = txn.transactionId;
+            accounts[i] = txn.accountId;
+            amounts[i] = txn.amount;
+            debits[i] = txn.isDebit;
+        }
+
+        return addTransactionsAndDetectFraud(ids, accounts, amounts, debits);
+    }
+
+    public int[] addTransactionsAndDetectFraud(int[] ids, int[] accounts, int[] amounts, boolean[] debits) {
+        var count = ids.length;
+        if (accounts.length != count || amounts.length != count || debits.length != count) {
+            throw new IllegalArgumentException("Batch columns must have the same length");
+        }
+
+        var idStarts = new int[shards.length + 1];
+        var byId = partition(ids, idStarts);
+        var accepted = new boolean[count];
+        runOnShards(shard -> {
+            var transactionIds = shards[shard].transactionIds;
+            for (var k = idStarts[shard]; k < idStarts[shard + 1]; k++) {
+                var i = byId[k];
+                accepted[i] = transactionIds.add(ids[i]);
+            }
+        });
+
+        var scores = new int[count];
+        for (var i = 0; i < count; i++) {
+            if (accepted[i]) {
+                scores[i] = patternDetector.score();
+                patternDetector.accept(amounts[i]);
+                nextSequence++;
+            }
+        }
+
+        var accountStarts = new int[shards.length + 1];
+        var byAccount = partition(accounts, accountStarts);
+        runOnShards(shard -> {
+            var accountShard = shards[shard];
+            for (var k = accountStarts[shard]; k < accountStarts[shard + 1]; k++) {
+                var i = byAccount[k];
+                if (accepted[i]) {
+                    var fraudScore = score(accountShard, accounts[i], amounts[i], debits[i]);
+                    if (fraudScore != 0) {
+                        scores[i] = fraudScore;
+                    }
+                }
+            }
+        });
+
+        return scores;
+    }
+
+    public int getAverageTransactionAmountByAccount(int accountId) {
+        return shards[shardOf(accountId)].accountAggregates.getAverage(accountId);
+    }
+
+    public int getTransactionPatternAboveThreshold() {
+        return patternDetector.score();
+    }
+
+    public long getHistorySize() {
+        return nextSequence;
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    private static int score(Shard shard, int accountId, int amount, boolean isDebit) {
+        var aggregates = shard.accountAggregates;
+        var slot = aggregates.slotFor(accountId);
+        var fraudScore = TransactionEngine.excessiveDebitScore(amount, isDebit, aggregates.average(slot));
+        aggregates.addToSlot(slot, amount);
+        return fraudScore;
+    }
+
+    // Batch indices grouped by the shard of their key, each group in batch order (a stable
+    // counting sort); group s is order[starts[s]..starts[s + 1]).
+    private int[] partition(int[] keys, int[] starts) {
+        var shardOfIndex = new int[keys.length];
+        for (var i = 0; i < keys.length; i++) {
+            shardOfIndex[i] = shardOf(keys[i]);
+            starts[shardOfIndex[i] + 1]++;
+        }
+        for (var shard = 0; shard < shards.length; shard++) {
+            starts[shard + 1] += starts[shard];
+        }
+
+        var next = Arrays.copyOf(starts, shards.length);
+        var order = new int[keys.length];
+        for (var i = 0; i < keys.length; i++) {
+            order[next[shardOfIndex[i]]++] = i;
+        }
+        return order;
+    }
+
+    private void runOnShards(IntConsumer work) {
+        if (shards.length == 1) {
+            work.accept(0);
+            return;
+        }
+
+        var tasks = new ForkJoinTask<?>[shards.length];
+        for (var shard = 0; shard < shards.length; shard++) {
+            var index = shard;
+            tasks[shard] = pool.submit(() -> work.accept(index));
+        }
+        for (var task : tasks) {
+            task.join();
+        }
+    }
+
+    private int shardOf(int key) {
+        return AccountAggregates.mix(key) & shardMask;
+    }
+}
@@ -0,0 +1,141 @@
+package domain;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// Exact id set at ~4 bytes per id: a sorted, duplicate-free run searched by binary search,
+// plus two small hash sets in front of it, recent inserts and ids removed from the run.
+// When either grows past an eighth of the run they are merged into a new run, so the
+// merge cost amortizes to a few array copies per insert, like a one-level LSM tree.
+public class SortedIdStore implements TransactionIdIndex {
+    static final int MIN_MERGE_THRESHOLD = 4096;
+
+    int[] run = new int[0];
+    int runSize;
+    final TransactionIdSet pending = new TransactionIdSet();
+    final TransactionIdSet removed = new TransactionIdSet();
+    int size;
+
+    @Override
+    public boolean contains(int transactionId) {
+        return pending.contains(transactionId) || inRun(transactionId) && !removed.contains(transactionId);
+    }
+
+    @Override
+    public boolean add(int transactionId) {
+        if (pending.contains(transactionId)) {
+            return false;
+        }
+        if (inRun(transactionId)) {
+            if (!removed.remove(transactionId)) {
+                return false;
+            }
+            size++;
+            return true;
+        }
+
+        pending.add(transactionId);
+        size++;
+        maybeMerge(pending.size());
+        return true;
+    }
+
+    // For an id the caller already knows is absent, e.g. from a Bloom filter miss: skips the
+    // pending and run lookups add() would do.
+    void addAbsent(int transactionId) {
+        pending.add(transactionId);
+        size++;
+        maybeMerge(pending.size());
+    }
+
+    @Override
+    public boolean remove(int transactionId) {
+        if (pending.remove(transactionId)) {
+            size--;
+            return true;
+        }
+        if (!inRun(transactionId) || !removed.add(transactionId)) {
+            return false;
+        }
+        size--;
+        maybeMerge(removed.size());
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        run = new int[0];
+        runSize = 0;
+        pending.clear();
+        removed.clear();
+        size = 0;
+    }
+
+    @Override
+    public void ensureCapacity(int expectedIds) {
+        if (expectedIds > run.length) {
+            run = Arrays.copyOf(run, expectedIds);
+        }
+    }
+
+    @Override
+    public long memoryBytes() {
+        return (long) Integer.BYTES * run.length + pending.memoryBytes() + removed.memoryBytes();
+    }
+
+    @Override
+    public void forEach(IntConsumer action) {
+        for (var i = 0; i < runSize; i++) {
+            if (removed.size() == 0 || !removed.contains(run[i])) {
+                action.accept(run[i]);
+            }
+        }
+        pending.forEach(action);
+    }
+
+    void merge() {
+        var incoming = new int[pending.size()];
+        pending.forEach(new IntConsumer() {
+            int next;
+
+            @Override
+            public void accept(int id) {
+                incoming[next++] = id;
+            }
+        });
+        Arrays.sort(incoming);
+
+        var merged = new int[Math.max(run.length, size)];
+        int i = 0, j = 0, k = 0;
+        while (i < runSize || j < incoming.length) {
+            if (j == incoming.length || i < runSize && run[i] < incoming[j]) {
+                if (removed.size() == 0 || !removed.contains(run[i])) {
+                    merged[k++] = run[i];
+                }
+                i++;
+            } else {
+                merged[k++] = incoming[j++];
+            }
+        }
+
+        run = merged;
+        runSize = k;
+        pending.clear();
+        removed.clear();
+    }
+
+    private boolean inRun(int transactionId) {
+        return Arrays.binarySearch(run, 0, runSize, transactionId) >= 0;
+    }
+
+    private void maybeMerge(int buffered) {
+        if (buffered > Math.max(MIN_MERGE_THRESHOLD, runSize >>> 3)) {
+            merge();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package domain;
+
+import java.util.function.IntConsumer;
+
+// Two-tier dedup for very large id counts. A Bloom filter answers "definitely new" for
+// almost every fresh id without touching the exact store; only filter hits (true
+// duplicates plus the configured false-positive fraction) fall through to the sorted
+// store. Removals cannot clear filter bits, so the filter is rebuilt from the store once
+// it has absorbed more insertions than it was sized for.
+public class TieredTransactionIdIndex implements TransactionIdIndex {
+    static final int MIN_EXPECTED_IDS = 1 << 16;
+
+    final double falsePositiveRate;
+    final SortedIdStore store;
+    BloomFilter filter;
+    long filterInsertions;
+    long filterRejections;
+    long falsePositives;
+
+    public TieredTransactionIdIndex(long expectedIds, double falsePositiveRate) {
+        this(expectedIds, falsePositiveRate, new SortedIdStore());
+    }
+
+    TieredTransactionIdIndex(long expectedIds, double falsePositiveRate, SortedIdStore store) {
+        this.falsePositiveRate = falsePositiveRate;
+        this.store = store;
+        this.filter = new BloomFilter(Math.max(expectedIds, MIN_EXPECTED_IDS), falsePositiveRate);
+    }
+
+    @Override
+    public boolean contains(int transactionId) {
+        if (!filter.mightContain(transactionId)) {
+            filterRejections++;
+            return false;
+        }
+        if (store.contains(transactionId)) {
+            return true;
+        }
+        falsePositives++;
+        return false;
+    }
+
+    @Override
+    public boolean add(int transactionId) {
+        // same probe as contains(), but uncounted: the engine's own lookup was counted already
+        if (!filter.mightContain(transactionId)) {
+            store.addAbsent(transactionId);
+        } else if (!store.add(transactionId)) {
+            return false;
+        }
+
+        filter.put(transactionId);
+        if (++filterInsertions > filter.expectedInsertions()) {
+            rebuildFilter(Math.max(filter.expectedInsertions(), 2L * store.size()));
+        }
+        return true;
+    }
+
+    @Override
+    public boolean remove(int transactionId) {
+        return store.remove(transactionId);
+    }
+
+    @Override
+    public int size() {
+        return store.size();
+    }
+
+    @Override
+    public void clear() {
+        store.clear();
+        filter.clear();
+        filterInsertions = 0;
+    }
+
+    @Override
+    public void ensureCapacity(int expectedIds) {
+        if (expectedIds > filter.expectedInsertions()) {
+            rebuildFilter(expectedIds);
+        }
+    }
+
+    @Override
+    public long memoryBytes() {
+        return filter.memoryBytes() + store.memoryBytes();
+    }
+
+    @Override
+    public void forEach(IntConsumer action) {
+        store.forEach(action);
+    }
+
+    // Replaces the contents with sorted, duplicate-free ids in one pass.
+    void load(int[] sortedIds) {
+        store.clear();
+        store.run = sortedIds;
+        store.runSize = sortedIds.length;
+        store.size = sortedIds.length;
+        rebuildFilter(Math.max(filter.expectedInsertions(), 2L * sortedIds.length));
+    }
+
+    // Share of lookups for absent ids that the filter failed to reject.
+    public double observedFalsePositiveRate() {
+        var absent = filterRejections + falsePositives;
+        return absent == 0 ? 0 : (double) falsePositives / absent;
+    }
+
+    public long getFalsePositives() {
+        return falsePositives;
+    }
+
+    public long getFilterRejections() {
+        return filterRejections;
+    }
+
+    public BloomFilter getFilter() {
+        return filter;
+    }
+
+    private void rebuildFilter(long expectedIds) {
+        var rebuilt = new BloomFilter(expectedIds, falsePositiveRate);
+        store.forEach(rebuilt::put);
+        filter = rebuilt;
+        filterInsertions = store.size();
+    }
+}
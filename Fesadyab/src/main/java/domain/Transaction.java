@@ -1,10 +1,14 @@
 package domain;
 
+import lombok.AllArgsConstructor;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 @Getter
 @Setter
+@NoArgsConstructor
+@AllArgsConstructor
 public class Transaction {
     int transactionId;
     int accountId;
@@ -18,4 +22,9 @@ public class Transaction {
         }
         return false;
     }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(transactionId);
+    }
 }
@@ -1,54 +1,176 @@
 package domain;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntSupplier;
 
-public class TransactionEngine {
-    ArrayList<Transaction> transactionHistory;
-    int THRESHOLD = 1000;
+public class TransactionEngine implements Closeable {
+    TransactionHistory transactionHistory;
+    TransactionIdIndex transactionIds;
+    AccountAggregates accountAggregates;
+    AccountStatistics accountStatistics;
+    AccountQuantileSketches quantileSketches;
+    PatternDetector patternDetector;
+    FraudRulePipeline rulePipeline;
+    AccountWindows accountWindows;
+    AccountHistoryIndex accountIndex;
+    TransactionLog transactionLog;
+    WriteAheadLog writeAheadLog;
+    EngineMetrics metrics;
+    StampedLock stateLock;
+    // slots whose account lost its last retained transaction, released when the write ends
+    int[] emptySlots = new int[AccountAggregates.DEFAULT_CAPACITY];
+    int emptySlotCount;
+    final EngineOptions options;
+    final int maxTransactions;
+    final int THRESHOLD = 1000;
+    static final int OPTIMISTIC_READ_ATTEMPTS = 8;
 
     public TransactionEngine() {
-        transactionHistory = new ArrayList<>();
+        this(new EngineOptions());
     }
 
-    int getAverageTransactionAmountByAccount(int accountId) {
-        var totalAmount = 0;
-        var count = 0;
+    public TransactionEngine(EngineOptions options) {
+        this.options = options;
+        var retention = options.getRetentionPolicy();
+        maxTransactions = retention.maxTransactions();
 
-        for (Transaction txn : transactionHistory) {
-            if (txn.accountId == accountId) {
-                totalAmount += txn.amount;
-                count++;
-            }
+        transactionHistory = new TransactionHistory();
+        transactionIds = options.getDedupMode() == EngineOptions.DedupMode.TIERED
+                ? new TieredTransactionIdIndex(options.getExpectedTransactionIds(), options.getDedupFalsePositiveRate())
+                : new TransactionIdSet();
+        accountAggregates = new AccountAggregates();
+        patternDetector = new PatternDetector(THRESHOLD);
+        rulePipeline = options.getFraudRules() == null
+                ? FraudRulePipeline.defaultRules()
+                : new FraudRulePipeline(options.getFraudRules());
+        rulePipeline.validate(options);
+        if (retention.maxPerAccount() > 0) {
+            accountWindows = new AccountWindows(retention.maxPerAccount());
+        }
+        if (options.isAccountStatisticsEnabled()) {
+            accountStatistics = new AccountStatistics(options.getEwmaAlpha());
+        }
+        if (options.isQuantileSketchesEnabled()) {
+            quantileSketches = new AccountQuantileSketches(options.getQuantileSketchBuckets(),
+                    options.getQuantileSketchAccuracy());
+        }
+        if (options.isAccountIndexEnabled()) {
+            accountIndex = new AccountHistoryIndex(options.getTopDebitsPerAccount());
         }
+        if (options.isConcurrentReadsEnabled()) {
+            stateLock = new StampedLock();
+        }
+        if (options.isMetricsEnabled()) {
+            metrics = new EngineMetrics();
+            rulePipeline.instrument();
+        }
+    }
 
-        if (count == 0) {
-            return 0;
+    public TransactionEngine(TransactionLog transactionLog) throws IOException {
+        this(new EngineOptions(), transactionLog);
+    }
+
+    public TransactionEngine(EngineOptions options, TransactionLog transactionLog) throws IOException {
+        this(options);
+        reserve((int) Math.min(Integer.MAX_VALUE - 8, transactionLog.size()));
+        transactionLog.replay(this::append);
+        this.transactionLog = transactionLog;
+    }
+
+    public TransactionEngine(EngineOptions options, WriteAheadLog writeAheadLog) throws IOException {
+        this(options);
+        reserve((int) Math.min(Integer.MAX_VALUE - 8, writeAheadLog.size()));
+        writeAheadLog.replay(this::append);
+        this.writeAheadLog = writeAheadLog;
+    }
+
+    public TransactionEngine(EngineOptions options, Path snapshot) throws IOException {
+        this(options);
+        EngineSnapshot.restore(this, snapshot);
+    }
+
+    // Restores the snapshot, then replays only the log records written after it was taken.
+    public TransactionEngine(EngineOptions options, Path snapshot, TransactionLog transactionLog) throws IOException {
+        this(options);
+        var fromSequence = EngineSnapshot.restore(this, snapshot).records();
+        if (fromSequence > transactionLog.size()) {
+            throw new IOException("Snapshot is ahead of the transaction log");
         }
+        reserve((int) Math.min(Integer.MAX_VALUE - 8, transactionLog.size() - fromSequence));
+        transactionLog.replay(fromSequence, this::append);
+        this.transactionLog = transactionLog;
+    }
 
-        return totalAmount / count;
+    // A snapshot taken with a write-ahead log records where its tail starts, so replay seeks
+    // there instead of walking the whole log.
+    public TransactionEngine(EngineOptions options, Path snapshot, WriteAheadLog writeAheadLog) throws IOException {
+        this(options);
+        var from = EngineSnapshot.restore(this, snapshot);
+        if (from.records() > writeAheadLog.size()) {
+            throw new IOException("Snapshot is ahead of the write-ahead log");
+        }
+        reserve((int) Math.min(Integer.MAX_VALUE - 8, writeAheadLog.size() - from.records()));
+        if (from.offset() < 0) {
+            writeAheadLog.replay(from.records(), this::append);
+        } else {
+            writeAheadLog.replay(from, this::append);
+        }
+        this.writeAheadLog = writeAheadLog;
+    }
+
+    public int getAverageTransactionAmountByAccount(int accountId) {
+        if (stateLock == null) {
+            return accountAggregates.getAverage(accountId);
+        }
+        return read(() -> accountAggregates.getAverage(accountId));
+    }
+
+    public int getHistorySize() {
+        return stateLock == null ? transactionHistory.size() : read(() -> transactionHistory.size());
+    }
+
+    public int getPatternDiff() {
+        return stateLock == null ? patternDetector.score() : read(patternDetector::score);
     }
 
     int getTransactionPatternAboveThreshold(int threshold) {
-        if (transactionHistory.isEmpty()) {
+        if (threshold == patternDetector.getThreshold()) {
+            return patternDetector.score();
+        }
+
+        var history = transactionHistory;
+        if (history.isEmpty()) {
             return 0;
         }
 
         var diff = 0;
-        var previous = transactionHistory.get(0);
+        var previousId = history.transactionId(0);
+        var previousAmount = history.amount(0);
 
-        for (Transaction txn : transactionHistory) {
-            if (txn.transactionId == previous.transactionId) {
+        for (var i = 0; i < history.size(); i++) {
+            if (history.transactionId(i) == previousId) {
                 continue;
             }
 
-            if (txn.amount <= threshold) {
+            var amount = history.amount(i);
+            if (amount <= threshold) {
                 continue;
             }
 
             if (diff == 0) {
-                diff = txn.amount - previous.amount;
-                previous = txn;
-            } else if (diff != txn.amount - previous.amount) {
+                diff = amount - previousAmount;
+                previousId = history.transactionId(i);
+                previousAmount = amount;
+            } else if (diff != amount - previousAmount) {
                 return 0;
             }
         }
@@ -56,27 +178,602 @@ public class TransactionEngine {
         return diff;
     }
 
+    public AccountStatistics.Stats getAccountStatistics(int accountId) {
+        if (accountStatistics == null) {
+            throw new IllegalStateException("Account statistics are disabled, see EngineOptions.setAccountStatisticsEnabled");
+        }
+        var slot = accountAggregates.find(accountId);
+        return slot < 0 ? AccountStatistics.Stats.EMPTY : accountStatistics.get(slot);
+    }
+
+    // q in 0..1, over the account's live transactions
+    public double getAccountQuantile(int accountId, double q) {
+        requireQuantileSketches();
+        var slot = accountAggregates.find(accountId);
+        return slot < 0 ? 0 : quantileSketches.quantile(slot, q);
+    }
+
+    // A detached copy of the account's sketch, e.g. to merge with other shards' copies.
+    public AccountQuantileSketches getAccountSketch(int accountId) {
+        requireQuantileSketches();
+        var slot = accountAggregates.find(accountId);
+        return slot < 0
+                ? new AccountQuantileSketches(quantileSketches.buckets, quantileSketches.relativeAccuracy, 1)
+                : quantileSketches.copy(slot);
+    }
+
+    private void requireQuantileSketches() {
+        if (quantileSketches == null) {
+            throw new IllegalStateException("Quantile sketches are disabled, see EngineOptions.setQuantileSketchesEnabled");
+        }
+    }
+
+    // Newest first, at most n of the account's live transactions.
+    public List<Transaction> getLastTransactions(int accountId, int n) {
+        requireAccountIndex();
+        var stamp = stateLock == null ? 0 : stateLock.readLock();
+        try {
+            var slot = accountAggregates.find(accountId);
+            if (slot < 0) {
+                return List.of();
+            }
+
+            var history = transactionHistory;
+            var count = Math.min(n, accountAggregates.counts[slot]);
+            var result = new ArrayList<Transaction>(Math.max(count, 0));
+            var sequence = accountIndex.latest(slot);
+            while (result.size() < count && sequence >= history.firstSequence()) {
+                var index = (int) (sequence - history.firstSequence());
+                result.add(history.get(index));
+                sequence = accountIndex.previous(index);
+            }
+            return result;
+        } finally {
+            if (stateLock != null) {
+                stateLock.unlockRead(stamp);
+            }
+        }
+    }
+
+    // Largest first, the account's top debits among its live transactions. The first query
+    // after one of them was evicted refills the account's heap, under the write lock.
+    public List<Transaction> getTopDebits(int accountId) {
+        requireAccountIndex();
+        var stamp = stateLock == null ? 0 : stateLock.readLock();
+        try {
+            var slot = accountAggregates.find(accountId);
+            if (slot < 0) {
+                return List.of();
+            }
+            if (accountIndex.isStale(slot)) {
+                if (stateLock != null) {
+                    var writeStamp = stateLock.tryConvertToWriteLock(stamp);
+                    if (writeStamp == 0) {
+                        stateLock.unlockRead(stamp);
+                        writeStamp = stateLock.writeLock();
+                    }
+                    stamp = writeStamp;
+                    // a write may have slipped in between the two locks
+                    slot = accountAggregates.find(accountId);
+                    if (slot < 0) {
+                        return List.of();
+                    }
+                }
+                if (accountIndex.isStale(slot)) {
+                    accountIndex.rebuildTopDebits(slot, transactionHistory, accountAggregates.counts[slot]);
+                }
+            }
+
+            var sequences = new long[accountIndex.topK];
+            var count = accountIndex.topDebits(slot, sequences);
+            var result = new ArrayList<Transaction>(count);
+            for (var i = 0; i < count; i++) {
+                result.add(transactionHistory.get((int) (sequences[i] - transactionHistory.firstSequence())));
+            }
+            return result;
+        } finally {
+            if (stateLock != null) {
+                // read or, after a refill, write
+                stateLock.unlock(stamp);
+            }
+        }
+    }
+
+    private void requireAccountIndex() {
+        if (accountIndex == null) {
+            throw new IllegalStateException("The account index is disabled, see EngineOptions.setAccountIndexEnabled");
+        }
+    }
+
     int detectFraudulentTransaction(Transaction txn) {
         var averageAmount = getAverageTransactionAmountByAccount(txn.accountId);
+        return excessiveDebitScore(txn.amount, txn.isDebit, averageAmount);
+    }
 
-        if (txn.isDebit && txn.amount > 2 * averageAmount) {
-            return txn.amount - 2 * averageAmount;  // Excessive debit, marked as suspicious
+    static int excessiveDebitScore(int amount, boolean isDebit, int averageAmount) {
+        if (isDebit && amount > 2 * averageAmount) {
+            return amount - 2 * averageAmount;  // Excessive debit, marked as suspicious
         }
 
         return 0;
     }
 
     public int addTransactionAndDetectFraud(Transaction txn) {
-        if (transactionHistory.contains(txn)) {
+        return addAndScore(txn.transactionId, txn.accountId, txn.amount, txn.isDebit);
+    }
+
+    // Primitive ingest path: nothing is allocated per call once the columns and indexes have
+    // reached their working size (e.g. under a retention bound), and no Transaction exists
+    // until someone reads the history.
+    public int addAndScore(int transactionId, int accountId, int amount, boolean isDebit) {
+        var stamp = beginWrite();
+        try {
+            if (metrics != null) {
+                return addInstrumented(transactionId, accountId, amount, isDebit);
+            }
+
+            if (transactionIds.contains(transactionId)) {
+                return 0;
+            }
+
+            var slot = accountAggregates.slotFor(accountId);
+            var fraudScore = rulePipeline.score(this, slot, amount, isDebit);
+
+            log(transactionId, accountId, amount, isDebit);
+            append(slot, transactionId, accountId, amount, isDebit);
+            return fraudScore;
+        } finally {
+            endWrite(stamp);
+        }
+    }
+
+    // Like addTransactionAndDetectFraud, but the score is only handed out once the transaction
+    // (or, for a duplicate, the one it repeats) is durable in the write-ahead log.
+    public CompletableFuture<Integer> addTransactionDurably(Transaction txn) {
+        if (writeAheadLog == null) {
+            throw new IllegalStateException("No write-ahead log, see TransactionEngine(EngineOptions, WriteAheadLog)");
+        }
+        var score = addAndScore(txn.transactionId, txn.accountId, txn.amount, txn.isDebit);
+        return writeAheadLog.commit().thenApply(durableSize -> score);
+    }
+
+    public WriteAheadLog getWriteAheadLog() {
+        return writeAheadLog;
+    }
+
+    // What-if scoring: the score addTransactionAndDetectFraud would return right now, without
+    // changing anything. Safe from any number of threads; with concurrentReadsEnabled also
+    // while another thread ingests.
+    public int score(Transaction txn) {
+        return score(txn.transactionId, txn.accountId, txn.amount, txn.isDebit);
+    }
+
+    public int score(int transactionId, int accountId, int amount, boolean isDebit) {
+        if (stateLock == null) {
+            return evaluate(transactionId, accountId, amount, isDebit);
+        }
+        return read(() -> evaluate(transactionId, accountId, amount, isDebit));
+    }
+
+    // Applies a transaction scored earlier without scoring it again. Returns false for a
+    // duplicate id.
+    public boolean commit(Transaction txn) {
+        return commit(txn.transactionId, txn.accountId, txn.amount, txn.isDebit);
+    }
+
+    public boolean commit(int transactionId, int accountId, int amount, boolean isDebit) {
+        var stamp = beginWrite();
+        try {
+            if (transactionIds.contains(transactionId)) {
+                if (metrics != null) {
+                    metrics.duplicatesRejected.getAndIncrement();
+                }
+                return false;
+            }
+
+            var slot = accountAggregates.slotFor(accountId);
+            log(transactionId, accountId, amount, isDebit);
+            append(slot, transactionId, accountId, amount, isDebit);
+            if (metrics != null) {
+                metrics.accepted.getAndIncrement();
+            }
+            return true;
+        } finally {
+            endWrite(stamp);
+        }
+    }
+
+    private int evaluate(int transactionId, int accountId, int amount, boolean isDebit) {
+        if (transactionIds.contains(transactionId)) {
             return 0;
         }
+        return rulePipeline.evaluate(this, accountAggregates.find(accountId), amount, isDebit);
+    }
+
+    public int[] addTransactionsAndDetectFraud(List<Transaction> transactions) {
+        var count = transactions.size();
+        var ids = new int[count];
+        var accounts = new int[count];
+        var amounts = new int[count];
+        var debits = new boolean[count];
+
+        for (var i = 0; i < count; i++) {
+            var txn = transactions.get(i);
+            ids[i] = txn.transactionId;
+            accounts[i] = txn.accountId;
+            amounts[i] = txn.amount;
+            debits[i] = txn.isDebit;
+        }
+
+        return addTransactionsAndDetectFraud(ids, accounts, amounts, debits);
+    }
+
+    public int[] addTransactionsAndDetectFraud(int[] ids, int[] accounts, int[] amounts, boolean[] debits) {
+        var count = ids.length;
+        if (accounts.length != count || amounts.length != count || debits.length != count) {
+            throw new IllegalArgumentException("Batch columns must have the same length");
+        }
+
+        var stamp = beginWrite();
+        try {
+            return addBatch(ids, accounts, amounts, debits);
+        } finally {
+            endWrite(stamp);
+        }
+    }
+
+    private int[] addBatch(int[] ids, int[] accounts, int[] amounts, boolean[] debits) {
+        var count = ids.length;
+        reserve(count);
+
+        var scores = new int[count];
+        if (metrics != null) {
+            for (var i = 0; i < count; i++) {
+                scores[i] = addInstrumented(ids[i], accounts[i], amounts[i], debits[i]);
+            }
+            return scores;
+        }
+
+        // resolve every account slot up front so the scoring loop below only touches dense arrays
+        var slots = new int[count];
+        for (var i = 0; i < count; i++) {
+            slots[i] = accountAggregates.slotFor(accounts[i]);
+        }
+
+        for (var i = 0; i < count; i++) {
+            if (!transactionIds.add(ids[i])) {
+                continue;
+            }
+
+            var slot = slots[i];
+            scores[i] = rulePipeline.score(this, slot, amounts[i], debits[i]);
 
-        var fraudScore = detectFraudulentTransaction(txn);
-        if (fraudScore == 0) {
-            fraudScore = getTransactionPatternAboveThreshold(THRESHOLD);
+            log(ids[i], accounts[i], amounts[i], debits[i]);
+            append(slot, ids[i], accounts[i], amounts[i], debits[i]);
         }
 
-        transactionHistory.add(txn);
+        // accounts that only brought duplicates got a slot above but nothing to keep in it
+        for (var slot : slots) {
+            if (accountAggregates.counts[slot] == 0) {
+                emptySlot(slot);
+            }
+        }
+        return scores;
+    }
+
+    public void loadTransactionHistory(Collection<Transaction> transactions) {
+        var stamp = beginWrite();
+        try {
+            reserve(transactions.size());
+            for (Transaction txn : transactions) {
+                if (!transactionIds.contains(txn.transactionId)) {
+                    log(txn.transactionId, txn.accountId, txn.amount, txn.isDebit);
+                    append(txn.transactionId, txn.accountId, txn.amount, txn.isDebit);
+                }
+            }
+        } finally {
+            endWrite(stamp);
+        }
+    }
+
+    public void rebuildIndexes() {
+        var stamp = beginWrite();
+        try {
+            rebuild();
+        } finally {
+            endWrite(stamp);
+        }
+    }
+
+    private void rebuild() {
+        transactionIds.clear();
+        if (accountIndex != null) {
+            accountIndex.clear();
+        }
+        accountAggregates.clear();
+        patternDetector.reset();
+        if (accountStatistics != null) {
+            accountStatistics.clear();
+        }
+        if (quantileSketches != null) {
+            quantileSketches.clear();
+        }
+        if (accountWindows != null) {
+            accountWindows.clear();
+        }
+
+        var history = transactionHistory;
+        transactionHistory = new TransactionHistory(history.size());
+        transactionIds.ensureCapacity(history.size());
+        for (var i = 0; i < history.size(); i++) {
+            if (!transactionIds.contains(history.transactionId(i))) {
+                append(history.transactionId(i), history.accountId(i), history.amount(i), history.isDebit(i));
+            }
+        }
+    }
+
+    public TransactionHistory getTransactionHistory() {
+        return transactionHistory;
+    }
+
+    // With concurrent reads enabled, writers wait from the log sync to the last byte, so the
+    // snapshot is one moment and matches the log sequence it records. Otherwise the engine has
+    // a single owner, which must not ingest while it writes the snapshot.
+    public void writeSnapshot(Path path, boolean includeHistory) throws IOException {
+        var stamp = stateLock == null ? 0 : stateLock.readLock();
+        try {
+            EngineSnapshot.write(this, path, includeHistory);
+        } finally {
+            if (stateLock != null) {
+                stateLock.unlockRead(stamp);
+            }
+        }
+    }
+
+    public TransactionIdIndex getTransactionIdIndex() {
+        return transactionIds;
+    }
+
+    public EngineMetrics.Snapshot getMetrics() {
+        if (metrics == null) {
+            throw new IllegalStateException("Metrics are disabled, see EngineOptions.setMetricsEnabled");
+        }
+        return metrics.snapshot(transactionHistory.size(), rulePipeline);
+    }
+
+    public void resetMetrics() {
+        if (metrics != null) {
+            metrics.reset();
+        }
+        rulePipeline.resetStatistics();
+    }
+
+    public FraudRulePipeline getRulePipeline() {
+        return rulePipeline;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (transactionLog != null) {
+            transactionLog.close();
+        }
+        if (writeAheadLog != null) {
+            writeAheadLog.close();
+        }
+    }
+
+    private void log(int transactionId, int accountId, int amount, boolean isDebit) {
+        if (writeAheadLog != null) {
+            writeAheadLog.append(transactionId, accountId, amount, isDebit);
+        }
+        if (transactionLog == null) {
+            return;
+        }
+
+        try {
+            transactionLog.append(transactionId, accountId, amount, isDebit);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long beginWrite() {
+        return stateLock == null ? 0 : stateLock.writeLock();
+    }
+
+    private void endWrite(long stamp) {
+        releaseEmptySlots();
+        if (stateLock != null) {
+            stateLock.unlockWrite(stamp);
+        }
+    }
+
+    private void emptySlot(int slot) {
+        if (emptySlotCount == emptySlots.length) {
+            emptySlots = Arrays.copyOf(emptySlots, emptySlotCount * 2);
+        }
+        emptySlots[emptySlotCount++] = slot;
+    }
+
+    // Eviction can empty a slot that a batch has already resolved for a later transaction,
+    // so slots are only recycled once the write is over, and only if still empty. Without
+    // this, account churn under a retention bound would grow every per-slot column forever.
+    private void releaseEmptySlots() {
+        for (var i = 0; i < emptySlotCount; i++) {
+            var slot = emptySlots[i];
+            if (!accountAggregates.release(slot)) {
+                continue;
+            }
+            if (accountWindows != null) {
+                accountWindows.reset(slot);
+            }
+            if (accountStatistics != null) {
+                accountStatistics.reset(slot);
+            }
+            if (quantileSketches != null) {
+                quantileSketches.reset(slot);
+            }
+            if (accountIndex != null) {
+                accountIndex.reset(slot);
+            }
+        }
+        emptySlotCount = 0;
+    }
+
+    // Optimistic read: run the query without locking and keep the result only if no write
+    // started meanwhile. A query racing a rehash may see mismatched arrays and throw; that
+    // attempt is discarded like any other invalidated one. After a few failed attempts the
+    // reader takes the read lock, which only ever waits for the write in progress.
+    private int read(IntSupplier query) {
+        for (var attempt = 0; attempt < OPTIMISTIC_READ_ATTEMPTS; attempt++) {
+            var stamp = stateLock.tryOptimisticRead();
+            if (stamp != 0) {
+                try {
+                    var value = query.getAsInt();
+                    if (stateLock.validate(stamp)) {
+                        return value;
+                    }
+                } catch (RuntimeException e) {
+                    if (stateLock.validate(stamp)) {
+                        throw e;
+                    }
+                }
+            }
+            Thread.onSpinWait();
+        }
+
+        var stamp = stateLock.readLock();
+        try {
+            return query.getAsInt();
+        } finally {
+            stateLock.unlockRead(stamp);
+        }
+    }
+
+    private int addInstrumented(int transactionId, int accountId, int amount, boolean isDebit) {
+        var start = System.nanoTime();
+        var duplicate = transactionIds.contains(transactionId);
+        var afterDedup = System.nanoTime();
+        metrics.dedup.record(afterDedup - start);
+        if (duplicate) {
+            metrics.duplicatesRejected.getAndIncrement();
+            metrics.total.record(afterDedup - start);
+            return 0;
+        }
+
+        var slot = accountAggregates.slotFor(accountId);
+        var fraudScore = rulePipeline.score(this, slot, amount, isDebit);
+
+        log(transactionId, accountId, amount, isDebit);
+        append(slot, transactionId, accountId, amount, isDebit);
+        metrics.accepted.getAndIncrement();
+        metrics.total.record(System.nanoTime() - start);
         return fraudScore;
     }
+
+    private void reserve(int additional) {
+        var capacity = transactionHistory.size() + additional;
+        if (maxTransactions > 0) {
+            capacity = Math.min(capacity, maxTransactions);
+        }
+        transactionHistory.ensureCapacity(capacity);
+        transactionIds.ensureCapacity(Math.max(transactionIds.size(), capacity));
+    }
+
+    // replay and bulk loads; the one slot in play is occupied again afterwards
+    private void append(int transactionId, int accountId, int amount, boolean isDebit) {
+        append(accountAggregates.slotFor(accountId), transactionId, accountId, amount, isDebit);
+        releaseEmptySlots();
+    }
+
+    private void append(int slot, int transactionId, int accountId, int amount, boolean isDebit) {
+        if (maxTransactions > 0 && transactionHistory.size() == maxTransactions) {
+            evictOldest();
+        }
+        if (accountWindows != null && accountWindows.isFull(slot)) {
+            evictFromWindow(slot);
+        }
+
+        var sequence = transactionHistory.nextSequence();
+        transactionHistory.append(transactionId, accountId, amount, isDebit);
+        transactionIds.add(transactionId);
+        accountAggregates.addToSlot(slot, amount);
+        if (accountWindows != null) {
+            accountWindows.push(slot, sequence);
+        }
+        patternDetector.accept(amount);
+        if (accountIndex != null) {
+            accountIndex.append(slot, sequence, amount, isDebit);
+        }
+        if (accountStatistics != null) {
+            accountStatistics.accept(slot, amount);
+        }
+        if (quantileSketches != null) {
+            quantileSketches.add(slot, amount);
+        }
+    }
+
+    // The pattern detector is a property of the whole stream, so eviction leaves it alone.
+    private void evictOldest() {
+        var history = transactionHistory;
+        var slot = accountAggregates.find(history.accountId(0));
+        var sequence = history.firstSequence();
+
+        if (accountWindows == null) {
+            forget(slot, history.transactionId(0), history.amount(0));
+        } else if (!accountWindows.isEmpty(slot) && accountWindows.oldest(slot) == history.firstSequence()) {
+            accountWindows.removeOldest(slot);
+            forget(slot, history.transactionId(0), history.amount(0));
+        } else {
+            // the account window already dropped it from the averages
+            transactionIds.remove(history.transactionId(0));
+        }
+        history.dropOldest();
+        if (accountIndex != null) {
+            accountIndex.dropOldest();
+            accountIndex.evict(slot, sequence);
+        }
+    }
+
+    private void evictFromWindow(int slot) {
+        var sequence = accountWindows.oldest(slot);
+        var index = (int) (sequence - transactionHistory.firstSequence());
+        accountWindows.removeOldest(slot);
+        // the id stays in dedup until the transaction leaves the history
+        forgetAmount(slot, transactionHistory.amount(index));
+        if (accountIndex != null) {
+            accountIndex.evict(slot, sequence);
+        }
+    }
+
+    // after the history was replaced wholesale, e.g. by a snapshot restore
+    void rebuildAccountIndex() {
+        accountIndex.clear();
+        var history = transactionHistory;
+        for (var i = 0; i < history.size(); i++) {
+            accountIndex.append(accountAggregates.find(history.accountId(i)), history.firstSequence() + i,
+                    history.amount(i), history.isDebit(i));
+        }
+        for (var slot = 0; slot < accountAggregates.size; slot++) {
+            // released slots have nothing to index
+            if (accountAggregates.counts[slot] > 0) {
+                accountIndex.rebuildTopDebits(slot, history, accountAggregates.counts[slot]);
+            }
+        }
+    }
+
+    private void forget(int slot, int transactionId, int amount) {
+        transactionIds.remove(transactionId);
+        forgetAmount(slot, amount);
+    }
+
+    private void forgetAmount(int slot, int amount) {
+        accountAggregates.removeFromSlot(slot, amount);
+        if (quantileSketches != null) {
+            quantileSketches.remove(slot, amount);
+        }
+        if (accountAggregates.counts[slot] == 0) {
+            emptySlot(slot);
+        }
+    }
 }
@@ -0,0 +1,195 @@
+package domain;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Streams transactions out of a file through one reusable direct buffer, so input of any
+// size is read in constant memory and without a String or Transaction per record.
+//   CSV:    transactionId,accountId,amount,isDebit  (isDebit is true/false or 1/0, an optional
+//           header line is skipped)
+//   BINARY: back-to-back TransactionRecords; the first record that fails its check (never
+//           written, torn or corrupt) ends the stream, so TransactionLog segment files can be
+//           replayed as they are
+public class TransactionFileReader {
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    public enum Format {
+        CSV,
+        BINARY
+    }
+
+    final Format format;
+    final ByteBuffer buffer;
+    final long[] fields = new long[4];
+
+    public TransactionFileReader(Format format) {
+        this(format, DEFAULT_BUFFER_SIZE);
+    }
+
+    public TransactionFileReader(Format format, int bufferSize) {
+        if (bufferSize < TransactionRecord.BYTES) {
+            throw new IllegalArgumentException("Buffer must hold at least one record");
+        }
+        this.format = format;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    public long read(Path input, TransactionSink sink) throws IOException {
+        try (var channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            return format == Format.CSV ? readCsv(channel, sink) : readBinary(channel, sink);
+        }
+    }
+
+    private long readBinary(FileChannel channel, TransactionSink sink) throws IOException {
+        buffer.clear();
+        var count = 0L;
+        while (channel.read(buffer) >= 0 || buffer.position() > 0) {
+            buffer.flip();
+            if (buffer.remaining() < TransactionRecord.BYTES && channel.position() == channel.size()) {
+                // a trailing partial record is a truncated write; drop it
+                return count;
+            }
+            while (buffer.remaining() >= TransactionRecord.BYTES) {
+                var offset = buffer.position();
+                if (!TransactionRecord.isValid(buffer, offset)) {
+                    return count;
+                }
+                TransactionRecord.read(buffer, offset, sink);
+                buffer.position(offset + TransactionRecord.BYTES);
+                count++;
+            }
+            buffer.compact();
+        }
+        return count;
+    }
+
+    private long readCsv(FileChannel channel, TransactionSink sink) throws IOException {
+        buffer.clear();
+        var count = 0L;
+        var line = 0L;
+        var eof = false;
+        while (!eof) {
+            eof = channel.read(buffer) < 0;
+            buffer.flip();
+
+            while (true) {
+                var end = indexOfNewline(buffer);
+                if (end < 0) {
+                    if (!eof) {
+                        break;
+                    }
+                    end = buffer.limit();
+                    if (end == buffer.position()) {
+                        break;
+                    }
+                }
+
+                line++;
+                if (parseLine(buffer, buffer.position(), end, sink, line)) {
+                    count++;
+                }
+                buffer.position(Math.min(end + 1, buffer.limit()));
+            }
+
+            if (!eof && buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
+                throw new IOException("Line " + (line + 1) + " is longer than the read buffer");
+            }
+            buffer.compact();
+        }
+        return count;
+    }
+
+    private static int indexOfNewline(ByteBuffer buffer) {
+        for (var i = buffer.position(); i < buffer.limit(); i++) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean parseLine(ByteBuffer buffer, int from, int to, TransactionSink sink, long line) throws IOException {
+        if (to > from && buffer.get(to - 1) == '\r') {
+            to--;
+        }
+        if (to == from) {
+            return false;
+        }
+
+        var first = buffer.get(from);
+        if (first != '-' && (first < '0' || first > '9')) {
+            if (line == 1) {
+                return false;
+            }
+            throw new IOException("Malformed transaction at line " + line);
+        }
+
+        var field = 0;
+        var start = from;
+        for (var i = from; i <= to && field < 4; i++) {
+            if (i == to || buffer.get(i) == ',') {
+                fields[field] = field == 3 ? parseBoolean(buffer, start, i, line) : parseInt(buffer, start, i, line);
+                field++;
+                start = i + 1;
+            }
+        }
+        if (field != 4 || start <= to) {
+            throw new IOException("Malformed transaction at line " + line);
+        }
+
+        sink.accept((int) fields[0], (int) fields[1], (int) fields[2], fields[3] != 0);
+        return true;
+    }
+
+    private static long parseInt(ByteBuffer buffer, int from, int to, long line) throws IOException {
+        var negative = from < to && buffer.get(from) == '-';
+        var i = negative ? from + 1 : from;
+        if (i == to) {
+            throw new IOException("Malformed number at line " + line);
+        }
+
+        var value = 0L;
+        for (; i < to; i++) {
+            var digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IOException("Malformed number at line " + line);
+            }
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE + 1L) {
+                throw new IOException("Number out of range at line " + line);
+            }
+        }
+
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("Number out of range at line " + line);
+        }
+        return value;
+    }
+
+    private static long parseBoolean(ByteBuffer buffer, int from, int to, long line) throws IOException {
+        var length = to - from;
+        if (length == 1 && (buffer.get(from) == '0' || buffer.get(from) == '1')) {
+            return buffer.get(from) - '0';
+        }
+        if (length == 4 && matches(buffer, from, "true")) {
+            return 1;
+        }
+        if (length == 5 && matches(buffer, from, "false")) {
+            return 0;
+        }
+        throw new IOException("Malformed isDebit flag at line " + line);
+    }
+
+    private static boolean matches(ByteBuffer buffer, int from, String expected) {
+        for (var i = 0; i < expected.length(); i++) {
+            if (Character.toLowerCase(buffer.get(from + i)) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
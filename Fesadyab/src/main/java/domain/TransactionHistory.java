@@ -0,0 +1,176 @@
+package domain;
+
+import java.util.AbstractList;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+// Struct-of-arrays history: three int columns plus a debit bitset, about 12.1 bytes per
+// retained transaction once trimmed. Transaction objects are only created on demand.
+// The columns form a ring, so the oldest transaction can be dropped in O(1); index 0 is
+// always the oldest retained transaction, whose global sequence is firstSequence().
+public class TransactionHistory extends AbstractList<Transaction> implements RandomAccess {
+    static final int DEFAULT_CAPACITY = 16;
+
+    int[] transactionIds;
+    int[] accountIds;
+    int[] amounts;
+    long[] debits;
+    int head;
+    int size;
+    long firstSequence;
+
+    public TransactionHistory() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public TransactionHistory(int capacity) {
+        allocate(Math.max(capacity, 1));
+    }
+
+    public void append(int transactionId, int accountId, int amount, boolean isDebit) {
+        if (size == amounts.length) {
+            grow(size + 1);
+        }
+
+        var slot = physical(size);
+        transactionIds[slot] = transactionId;
+        accountIds[slot] = accountId;
+        amounts[slot] = amount;
+        if (isDebit) {
+            debits[slot >>> 6] |= 1L << slot;
+        } else {
+            debits[slot >>> 6] &= ~(1L << slot);
+        }
+        size++;
+    }
+
+    public void dropOldest() {
+        if (size == 0) {
+            throw new IllegalStateException("History is empty");
+        }
+
+        head = head + 1 == amounts.length ? 0 : head + 1;
+        size--;
+        firstSequence++;
+    }
+
+    public int transactionId(int index) {
+        return transactionIds[physical(index)];
+    }
+
+    public int accountId(int index) {
+        return accountIds[physical(index)];
+    }
+
+    public int amount(int index) {
+        return amounts[physical(index)];
+    }
+
+    public boolean isDebit(int index) {
+        var slot = physical(index);
+        return (debits[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    public long firstSequence() {
+        return firstSequence;
+    }
+
+    public long nextSequence() {
+        return firstSequence + size;
+    }
+
+    // flyweight read: fills a caller-owned Transaction instead of allocating one
+    public Transaction load(int index, Transaction target) {
+        Objects.checkIndex(index, size);
+        target.transactionId = transactionId(index);
+        target.accountId = accountId(index);
+        target.amount = amount(index);
+        target.isDebit = isDebit(index);
+        return target;
+    }
+
+    @Override
+    public Transaction get(int index) {
+        return load(index, new Transaction());
+    }
+
+    @Override
+    public boolean add(Transaction txn) {
+        append(txn.transactionId, txn.accountId, txn.amount, txn.isDebit);
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        firstSequence += size;
+        head = 0;
+        size = 0;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity > amounts.length) {
+            grow(capacity);
+        }
+    }
+
+    public void trimToSize() {
+        resize(Math.max(size, 1));
+    }
+
+    public int capacity() {
+        return amounts.length;
+    }
+
+    public long memoryBytes() {
+        return 3L * Integer.BYTES * amounts.length + (long) Long.BYTES * debits.length;
+    }
+
+    int physical(int index) {
+        var slot = head + index;
+        return slot >= amounts.length ? slot - amounts.length : slot;
+    }
+
+    private void grow(int minCapacity) {
+        var capacity = amounts.length + (amounts.length >> 1);
+        resize(Math.max(capacity, minCapacity));
+    }
+
+    private void resize(int capacity) {
+        var oldIds = transactionIds;
+        var oldAccounts = accountIds;
+        var oldAmounts = amounts;
+        var oldDebits = debits;
+        var oldHead = head;
+
+        allocate(capacity);
+        for (var i = 0; i < size; i++) {
+            var from = oldHead + i;
+            if (from >= oldAmounts.length) {
+                from -= oldAmounts.length;
+            }
+            transactionIds[i] = oldIds[from];
+            accountIds[i] = oldAccounts[from];
+            amounts[i] = oldAmounts[from];
+            if ((oldDebits[from >>> 6] & (1L << from)) != 0) {
+                debits[i >>> 6] |= 1L << i;
+            }
+        }
+        head = 0;
+    }
+
+    private void allocate(int capacity) {
+        transactionIds = new int[capacity];
+        accountIds = new int[capacity];
+        amounts = new int[capacity];
+        debits = new long[words(capacity)];
+    }
+
+    private static int words(int capacity) {
+        return (capacity + 63) >>> 6;
+    }
+}
@@ -0,0 +1,23 @@
+package domain;
+
+import java.util.function.IntConsumer;
+
+// Dedup index behind TransactionEngine: TransactionIdSet is exact and fast, the tiered
+// index trades a Bloom filter probe for a much smaller footprint at very large id counts.
+public interface TransactionIdIndex {
+    boolean contains(int transactionId);
+
+    boolean add(int transactionId);
+
+    boolean remove(int transactionId);
+
+    int size();
+
+    void clear();
+
+    void ensureCapacity(int expectedIds);
+
+    long memoryBytes();
+
+    void forEach(IntConsumer action);
+}
@@ -0,0 +1,157 @@
+package domain;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+public class TransactionIdSet implements TransactionIdIndex {
+    static final int DEFAULT_CAPACITY = 16;
+
+    // 0 marks an empty cell, so the id 0 itself is tracked by a separate flag
+    int[] keys;
+    boolean containsZero;
+    int size;
+
+    public TransactionIdSet() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public TransactionIdSet(int expectedIds) {
+        keys = new int[AccountAggregates.tableSizeFor(expectedIds)];
+    }
+
+    @Override
+    public boolean contains(int transactionId) {
+        if (transactionId == 0) {
+            return containsZero;
+        }
+
+        var mask = keys.length - 1;
+        var index = AccountAggregates.mix(transactionId) & mask;
+        while (keys[index] != 0) {
+            if (keys[index] == transactionId) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean add(int transactionId) {
+        if (transactionId == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+
+        var mask = keys.length - 1;
+        var index = AccountAggregates.mix(transactionId) & mask;
+        while (keys[index] != 0) {
+            if (keys[index] == transactionId) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+
+        if ((size + 1) * 2 > keys.length) {
+            rehash(keys.length * 2);
+            return add(transactionId);
+        }
+
+        keys[index] = transactionId;
+        size++;
+        return true;
+    }
+
+    @Override
+    public boolean remove(int transactionId) {
+        if (transactionId == 0) {
+            if (!containsZero) {
+                return false;
+            }
+            containsZero = false;
+            size--;
+            return true;
+        }
+
+        var mask = keys.length - 1;
+        var index = AccountAggregates.mix(transactionId) & mask;
+        while (keys[index] != transactionId) {
+            if (keys[index] == 0) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+
+        // backward-shift deletion keeps probe chains intact without tombstones
+        var hole = index;
+        var next = (hole + 1) & mask;
+        while (keys[next] != 0) {
+            var home = AccountAggregates.mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = 0;
+        size--;
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, 0);
+        containsZero = false;
+        size = 0;
+    }
+
+    @Override
+    public void ensureCapacity(int expectedIds) {
+        var required = AccountAggregates.tableSizeFor(expectedIds);
+        if (required > keys.length) {
+            rehash(required);
+        }
+    }
+
+    @Override
+    public long memoryBytes() {
+        return (long) Integer.BYTES * keys.length;
+    }
+
+    @Override
+    public void forEach(IntConsumer action) {
+        if (containsZero) {
+            action.accept(0);
+        }
+        for (var key : keys) {
+            if (key != 0) {
+                action.accept(key);
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        var oldKeys = keys;
+        keys = new int[capacity];
+        var mask = capacity - 1;
+        for (var key : oldKeys) {
+            if (key == 0) {
+                continue;
+            }
+            var index = AccountAggregates.mix(key) & mask;
+            while (keys[index] != 0) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = key;
+        }
+    }
+}
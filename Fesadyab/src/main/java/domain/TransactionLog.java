@@ -0,0 +1,179 @@
+package domain;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Append-only log of accepted transactions, stored as fixed-width TransactionRecords in
+// memory-mapped segment files named after the sequence number of their first record.
+// Only the newest segment is ever written; on open, its tail is scanned up to the first
+// invalid record, which is treated as the crash point and zeroed along with the rest.
+public class TransactionLog implements Closeable {
+    public static final int DEFAULT_RECORDS_PER_SEGMENT = 1 << 20;
+    static final int MAX_RECORDS_PER_SEGMENT = Integer.MAX_VALUE / TransactionRecord.BYTES;
+    static final String SEGMENT_SUFFIX = ".seg";
+
+    final Path directory;
+    final int recordsPerSegment;
+    final FsyncPolicy fsyncPolicy;
+    final List<Long> segmentBases;
+
+    FileChannel activeChannel;
+    MappedByteBuffer activeSegment;
+    int activeCapacity;
+    int activeCount;
+    long size;
+
+    public TransactionLog(Path directory) throws IOException {
+        this(directory, DEFAULT_RECORDS_PER_SEGMENT, FsyncPolicy.ON_ROLL);
+    }
+
+    public TransactionLog(Path directory, int recordsPerSegment, FsyncPolicy fsyncPolicy) throws IOException {
+        if (recordsPerSegment <= 0 || recordsPerSegment > MAX_RECORDS_PER_SEGMENT) {
+            throw new IllegalArgumentException("Records per segment must be between 1 and " + MAX_RECORDS_PER_SEGMENT);
+        }
+
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.fsyncPolicy = fsyncPolicy;
+        this.segmentBases = new ArrayList<>();
+
+        Files.createDirectories(directory);
+        try (var files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .forEach(segmentBases::add);
+        }
+
+        if (segmentBases.isEmpty()) {
+            openSegment(0);
+        } else {
+            recoverLastSegment();
+        }
+    }
+
+    public long append(int transactionId, int accountId, int amount, boolean isDebit) throws IOException {
+        if (activeCount == activeCapacity) {
+            roll();
+        }
+
+        var offset = activeCount * TransactionRecord.BYTES;
+        TransactionRecord.write(activeSegment, offset, transactionId, accountId, amount, isDebit);
+        if (fsyncPolicy == FsyncPolicy.EVERY_RECORD) {
+            activeSegment.force(offset, TransactionRecord.BYTES);
+        }
+
+        activeCount++;
+        return size++;
+    }
+
+    public long replay(TransactionSink sink) throws IOException {
+        return replay(0, sink);
+    }
+
+    public long replay(long fromSequence, TransactionSink sink) throws IOException {
+        var replayed = 0L;
+        for (var i = 0; i < segmentBases.size(); i++) {
+            long base = segmentBases.get(i);
+            var last = i == segmentBases.size() - 1;
+            var count = (int) ((last ? size : segmentBases.get(i + 1)) - base);
+            if (base + count <= fromSequence) {
+                continue;
+            }
+
+            var segment = last ? activeSegment.duplicate() : mapSealedSegment(base, count);
+            for (var index = (int) Math.max(0, fromSequence - base); index < count; index++) {
+                var offset = index * TransactionRecord.BYTES;
+                if (!TransactionRecord.isValid(segment, offset)) {
+                    throw new IOException("Corrupt record " + (base + index) + " in sealed segment " + segmentPath(base));
+                }
+                TransactionRecord.read(segment, offset, sink);
+                replayed++;
+            }
+        }
+        return replayed;
+    }
+
+    public void sync() {
+        activeSegment.force();
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public int segmentCount() {
+        return segmentBases.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (fsyncPolicy != FsyncPolicy.NEVER) {
+            activeSegment.force();
+        }
+        activeChannel.close();
+    }
+
+    private void roll() throws IOException {
+        if (fsyncPolicy != FsyncPolicy.NEVER) {
+            activeSegment.force();
+        }
+        activeChannel.close();
+        openSegment(size);
+    }
+
+    private void openSegment(long base) throws IOException {
+        activeChannel = FileChannel.open(segmentPath(base),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        activeCapacity = recordsPerSegment;
+        activeSegment = activeChannel.map(FileChannel.MapMode.READ_WRITE, 0, (long) activeCapacity * TransactionRecord.BYTES);
+        activeCount = 0;
+        size = base;
+        if (segmentBases.isEmpty() || segmentBases.get(segmentBases.size() - 1) != base) {
+            segmentBases.add(base);
+        }
+    }
+
+    private void recoverLastSegment() throws IOException {
+        long base = segmentBases.get(segmentBases.size() - 1);
+        activeChannel = FileChannel.open(segmentPath(base), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        var existingRecords = activeChannel.size() / TransactionRecord.BYTES;
+        activeCapacity = (int) Math.min(MAX_RECORDS_PER_SEGMENT, Math.max(recordsPerSegment, existingRecords));
+        activeSegment = activeChannel.map(FileChannel.MapMode.READ_WRITE, 0, (long) activeCapacity * TransactionRecord.BYTES);
+
+        activeCount = 0;
+        while (activeCount < activeCapacity && TransactionRecord.isValid(activeSegment, activeCount * TransactionRecord.BYTES)) {
+            activeCount++;
+        }
+
+        // anything past the first invalid record belongs to a write that never completed
+        for (var offset = activeCount * TransactionRecord.BYTES; offset < activeCapacity * TransactionRecord.BYTES; offset += Long.BYTES) {
+            if (activeSegment.getLong(offset) != 0) {
+                activeSegment.putLong(offset, 0);
+            }
+        }
+        size = base + activeCount;
+    }
+
+    private ByteBuffer mapSealedSegment(long base, int count) throws IOException {
+        try (var channel = FileChannel.open(segmentPath(base), StandardOpenOption.READ)) {
+            if (channel.size() < (long) count * TransactionRecord.BYTES) {
+                throw new IOException("Sealed segment " + segmentPath(base) + " is shorter than " + count + " records");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, (long) count * TransactionRecord.BYTES);
+        }
+    }
+
+    private Path segmentPath(long base) {
+        return directory.resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+    }
+}
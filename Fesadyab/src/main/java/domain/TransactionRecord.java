@@ -0,0 +1,58 @@
+package domain;
+
+import java.nio.ByteBuffer;
+
+// Fixed-width 16 byte record: transactionId, accountId, amount, flags (big-endian ints).
+// Flag bit 0 is isDebit, bit 1 marks a written record and bits 2-31 hold a checksum of the
+// other fields, so a zero-filled or half-written record is never mistaken for a real one.
+public final class TransactionRecord {
+    public static final int BYTES = 16;
+
+    static final int DEBIT = 1;
+    static final int PRESENT = 2;
+
+    private TransactionRecord() {
+    }
+
+    public static void write(ByteBuffer buffer, int offset, int transactionId, int accountId, int amount, boolean isDebit) {
+        buffer.putInt(offset, transactionId);
+        buffer.putInt(offset + 4, accountId);
+        buffer.putInt(offset + 8, amount);
+        buffer.putInt(offset + 12, flags(transactionId, accountId, amount, isDebit));
+    }
+
+    public static boolean isValid(ByteBuffer buffer, int offset) {
+        var flags = buffer.getInt(offset + 12);
+        return (flags & PRESENT) != 0
+                && flags == flags(transactionId(buffer, offset), accountId(buffer, offset), amount(buffer, offset), isDebit(buffer, offset));
+    }
+
+    public static int transactionId(ByteBuffer buffer, int offset) {
+        return buffer.getInt(offset);
+    }
+
+    public static int accountId(ByteBuffer buffer, int offset) {
+        return buffer.getInt(offset + 4);
+    }
+
+    public static int amount(ByteBuffer buffer, int offset) {
+        return buffer.getInt(offset + 8);
+    }
+
+    public static boolean isDebit(ByteBuffer buffer, int offset) {
+        return (buffer.getInt(offset + 12) & DEBIT) != 0;
+    }
+
+    public static void read(ByteBuffer buffer, int offset, TransactionSink sink) {
+        sink.accept(transactionId(buffer, offset), accountId(buffer, offset), amount(buffer, offset), isDebit(buffer, offset));
+    }
+
+    static int flags(int transactionId, int accountId, int amount, boolean isDebit) {
+        var h = transactionId * 0x9E3779B9;
+        h = (h ^ accountId) * 0x85EBCA6B;
+        h = (h ^ amount) * 0xC2B2AE35;
+        h ^= isDebit ? 0x27D4EB2F : 0;
+        h ^= h >>> 15;
+        return (h << 2) | PRESENT | (isDebit ? DEBIT : 0);
+    }
+}
@@ -0,0 +1,141 @@
+package domain;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Backtesting entry point: streams a CSV or binary transaction file through a
+// TransactionEngine, writes one fraud score per line and reports progress on stderr.
+//
+//   java -cp target/classes domain.TransactionReplay <input> [--format csv|binary]
+//        [--output <file>] [--report-interval-ms <millis>] [--retain <transactions>]
+public class TransactionReplay implements TransactionSink {
+    static final int REPORT_CHECK_MASK = 4095;
+    static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+    final TransactionEngine engine;
+    final PrintStream report;
+    final long reportIntervalNanos;
+    final LatencyHistogram intervalLatency = new LatencyHistogram();
+    final LatencyHistogram totalLatency = new LatencyHistogram();
+    final byte[] output = new byte[OUTPUT_BUFFER_SIZE];
+    OutputStream scores;
+    int outputPosition;
+    long processed;
+    long startNanos;
+    long lastReportNanos;
+    long processedAtLastReport;
+
+    public TransactionReplay(TransactionEngine engine, PrintStream report, long reportIntervalMillis) {
+        this.engine = engine;
+        this.report = report;
+        this.reportIntervalNanos = TimeUnit.MILLISECONDS.toNanos(reportIntervalMillis);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: TransactionReplay <input> [--format csv|binary] [--output <file>]"
+                    + " [--report-interval-ms <millis>] [--retain <transactions>]");
+            System.exit(2);
+        }
+
+        var input = Path.of(args[0]);
+        var format = args[0].endsWith(".csv") ? TransactionFileReader.Format.CSV : TransactionFileReader.Format.BINARY;
+        Path output = null;
+        var reportIntervalMillis = 1000L;
+        var options = new EngineOptions();
+        for (var i = 1; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            switch (args[i]) {
+                case "--format" -> format = TransactionFileReader.Format.valueOf(args[i + 1].toUpperCase());
+                case "--output" -> output = Path.of(args[i + 1]);
+                case "--report-interval-ms" -> reportIntervalMillis = Long.parseLong(args[i + 1]);
+                case "--retain" -> options.setRetentionPolicy(RetentionPolicy.maxTransactions(Integer.parseInt(args[i + 1])));
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        var replay = new TransactionReplay(new TransactionEngine(options), System.err, reportIntervalMillis);
+        try (var scores = output == null ? new BufferedOutputStream(System.out) : Files.newOutputStream(output)) {
+            replay.replay(input, format, scores);
+        }
+    }
+
+    public long replay(Path input, TransactionFileReader.Format format, OutputStream scores) throws IOException {
+        this.scores = scores;
+        startNanos = System.nanoTime();
+        lastReportNanos = startNanos;
+
+        new TransactionFileReader(format).read(input, this);
+
+        flushOutput();
+        scores.flush();
+        totalLatency.add(intervalLatency);
+        report("done", processed, System.nanoTime() - startNanos, totalLatency);
+        return processed;
+    }
+
+    @Override
+    public void accept(int transactionId, int accountId, int amount, boolean isDebit) {
+        var start = System.nanoTime();
+        var score = engine.addAndScore(transactionId, accountId, amount, isDebit);
+        var end = System.nanoTime();
+        intervalLatency.record(end - start);
+        writeScore(score);
+
+        if ((++processed & REPORT_CHECK_MASK) == 0 && end - lastReportNanos >= reportIntervalNanos) {
+            report("progress", processed - processedAtLastReport, end - lastReportNanos, intervalLatency);
+            totalLatency.add(intervalLatency);
+            intervalLatency.reset();
+            lastReportNanos = end;
+            processedAtLastReport = processed;
+        }
+    }
+
+    private void report(String label, long count, long elapsedNanos, LatencyHistogram latency) {
+        var runtime = Runtime.getRuntime();
+        var heapMb = (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024);
+        report.printf("%s: processed=%d rate=%.0f txn/s p50=%dns p99=%dns heap=%dMB%n",
+                label, processed, count / Math.max(elapsedNanos / 1e9, 1e-9),
+                latency.getValueAtPercentile(50), latency.getValueAtPercentile(99), heapMb);
+    }
+
+    private void writeScore(int score) {
+        if (outputPosition + 12 > output.length) {
+            flushOutput();
+        }
+
+        var value = (long) score;
+        if (value < 0) {
+            output[outputPosition++] = '-';
+            value = -value;
+        }
+        var digitsStart = outputPosition;
+        do {
+            output[outputPosition++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (int i = digitsStart, j = outputPosition - 1; i < j; i++, j--) {
+            var digit = output[i];
+            output[i] = output[j];
+            output[j] = digit;
+        }
+        output[outputPosition++] = '\n';
+    }
+
+    private void flushOutput() {
+        try {
+            scores.write(output, 0, outputPosition);
+            outputPosition = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package domain;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Scores transactions for remote callers over a minimal binary protocol (big-endian):
+//   request:  int count, then count TransactionRecords (16 bytes each, checksummed)
+//   response: int count, then count int scores, in request order
+// A connection may pipeline any number of requests; responses come back in order.
+//
+// One selector thread does all I/O and is the engine's only writer. Records are scored
+// straight out of the connection's direct read buffer into its direct write buffer, so a
+// batch is never copied or materialized. When a client reads responses slower than it
+// sends requests, the server stops reading from it until its write buffer drains.
+// A malformed frame or record closes the connection without applying any of that frame.
+// If the engine throws while scoring a frame, the records it had already applied stay
+// applied; the connection is closed and the frame counts as an error. A failure outside a
+// connection stops the server, and main reports it.
+//
+//   java -cp target/classes domain.TransactionServer [--port <port>] [--retain <transactions>]
+//        [--report-interval-ms <millis>]
+public class TransactionServer implements Closeable {
+    public static final int MAX_BATCH = 1 << 14;
+    static final int MAX_REQUEST_BYTES = Integer.BYTES + MAX_BATCH * TransactionRecord.BYTES;
+    static final int MAX_RESPONSE_BYTES = Integer.BYTES + MAX_BATCH * Integer.BYTES;
+    // room for a few pipelined responses before a slow reader is throttled
+    static final int WRITE_BUFFER_BYTES = 4 * MAX_RESPONSE_BYTES;
+
+    public record Stats(int openConnections, long acceptedConnections, long batches, long transactions,
+                        long queuedResponseBytes, long protocolErrors) {
+    }
+
+    static final class Connection {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocateDirect(MAX_REQUEST_BYTES);
+        final ByteBuffer out = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    final TransactionEngine engine;
+    final Selector selector;
+    final ServerSocketChannel serverChannel;
+    final Thread selectorThread;
+    final AtomicLong acceptedConnections = new AtomicLong();
+    final AtomicLong batches = new AtomicLong();
+    final AtomicLong transactions = new AtomicLong();
+    final AtomicLong queuedResponseBytes = new AtomicLong();
+    final AtomicLong protocolErrors = new AtomicLong();
+    volatile int openConnections;
+    volatile boolean running = true;
+    volatile Exception failure;
+
+    public TransactionServer(TransactionEngine engine, InetSocketAddress address) throws IOException {
+        this.engine = engine;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        this.selectorThread = Thread.ofPlatform().name("fesadyab-server").start(this::run);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        var port = 7878;
+        var reportIntervalMillis = 1000L;
+        var options = new EngineOptions();
+        for (var i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            switch (args[i]) {
+                case "--port" -> port = Integer.parseInt(args[i + 1]);
+                case "--retain" -> options.setRetentionPolicy(RetentionPolicy.maxTransactions(Integer.parseInt(args[i + 1])));
+                case "--report-interval-ms" -> reportIntervalMillis = Long.parseLong(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        try (var server = new TransactionServer(new TransactionEngine(options), new InetSocketAddress(port))) {
+            System.err.println("listening on " + server.getPort());
+            var last = server.getStats();
+            while (server.running) {
+                TimeUnit.MILLISECONDS.sleep(reportIntervalMillis);
+                var stats = server.getStats();
+                report(System.err, last, stats, reportIntervalMillis);
+                last = stats;
+            }
+            if (server.getFailure() != null) {
+                throw new IOException("Server stopped", server.getFailure());
+            }
+        }
+    }
+
+    static void report(PrintStream out, Stats last, Stats now, long intervalMillis) {
+        var seconds = intervalMillis / 1000.0;
+        out.printf("server: connections=%d batches/s=%.0f txn/s=%.0f queued=%dB errors=%d%n",
+                now.openConnections(), (now.batches() - last.batches()) / seconds,
+                (now.transactions() - last.transactions()) / seconds, now.queuedResponseBytes(), now.protocolErrors());
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    // Why the selector thread stopped, or null while it runs or after a clean close.
+    public Exception getFailure() {
+        return failure;
+    }
+
+    public Stats getStats() {
+        return new Stats(openConnections, acceptedConnections.get(), batches.get(), transactions.get(),
+                queuedResponseBytes.get(), protocolErrors.get());
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                var keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    var key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        service(key);
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+            running = false;
+        } finally {
+            for (var key : selector.keys()) {
+                closeQuietly(key);
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+                // shutting down anyway
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+            acceptedConnections.getAndIncrement();
+            openConnections++;
+        }
+    }
+
+    private void service(SelectionKey key) {
+        var connection = (Connection) key.attachment();
+        try {
+            if (key.isReadable() && connection.channel.read(connection.in) < 0) {
+                closeQuietly(key);
+                return;
+            }
+            // the second pass picks up frames that were waiting for room in the write buffer
+            for (var pass = 0; pass < 2; pass++) {
+                if (!process(connection)) {
+                    protocolErrors.getAndIncrement();
+                    closeQuietly(key);
+                    return;
+                }
+                flush(connection);
+            }
+
+            var blocked = connection.out.remaining() < pendingResponseBytes(connection.in);
+            key.interestOps((blocked ? 0 : SelectionKey.OP_READ) | (connection.out.position() > 0 ? SelectionKey.OP_WRITE : 0));
+        } catch (IOException e) {
+            closeQuietly(key);
+        } catch (RuntimeException e) {
+            // the engine failed mid-frame; only this connection is affected
+            protocolErrors.getAndIncrement();
+            closeQuietly(key);
+        }
+    }
+
+    // Scores every complete frame in the read buffer that fits in the write buffer.
+    // Returns false on a malformed frame.
+    private boolean process(Connection connection) {
+        var in = connection.in;
+        var out = connection.out;
+        in.flip();
+        try {
+            while (in.remaining() >= Integer.BYTES) {
+                var start = in.position();
+                var count = in.getInt(start);
+                if (count < 0 || count > MAX_BATCH) {
+                    return false;
+                }
+                var frameBytes = Integer.BYTES + count * TransactionRecord.BYTES;
+                var responseBytes = Integer.BYTES + count * Integer.BYTES;
+                if (in.remaining() < frameBytes || out.remaining() < responseBytes) {
+                    break;
+                }
+
+                // a frame is applied whole or not at all
+                for (var offset = start + Integer.BYTES; offset < start + frameBytes; offset += TransactionRecord.BYTES) {
+                    if (!TransactionRecord.isValid(in, offset)) {
+                        return false;
+                    }
+                }
+
+                var responseStart = out.position();
+                try {
+                    out.putInt(count);
+                    for (var offset = start + Integer.BYTES; offset < start + frameBytes; offset += TransactionRecord.BYTES) {
+                        out.putInt(engine.addAndScore(TransactionRecord.transactionId(in, offset),
+                                TransactionRecord.accountId(in, offset), TransactionRecord.amount(in, offset),
+                                TransactionRecord.isDebit(in, offset)));
+                    }
+                } catch (RuntimeException e) {
+                    // drop the partial response so the queued byte count stays exact
+                    out.position(responseStart);
+                    throw e;
+                }
+                in.position(start + frameBytes);
+                queuedResponseBytes.getAndAdd(responseBytes);
+                batches.getAndIncrement();
+                transactions.getAndAdd(count);
+            }
+            return true;
+        } finally {
+            in.compact();
+        }
+    }
+
+    private void flush(Connection connection) throws IOException {
+        var out = connection.out;
+        out.flip();
+        var written = connection.channel.write(out);
+        out.compact();
+        queuedResponseBytes.getAndAdd(-written);
+    }
+
+    // bytes the next complete frame in the read buffer will need in the write buffer
+    private static int pendingResponseBytes(ByteBuffer in) {
+        if (in.position() < Integer.BYTES) {
+            return 0;
+        }
+        var count = in.getInt(0);
+        return in.position() >= Integer.BYTES + count * TransactionRecord.BYTES ? Integer.BYTES + count * Integer.BYTES : 0;
+    }
+
+    private void closeQuietly(SelectionKey key) {
+        key.cancel();
+        if (key.attachment() instanceof Connection connection) {
+            queuedResponseBytes.getAndAdd(-connection.out.position());
+            connection.out.clear();
+            openConnections--;
+        }
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+            // the peer is gone either way
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package domain;
+
+@FunctionalInterface
+public interface TransactionSink {
+    void accept(int transactionId, int accountId, int amount, boolean isDebit);
+}
@@ -0,0 +1,328 @@
+package domain;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+// Durable log of accepted transactions with group commit. Appends only copy the record into
+// an in-memory group; a single committer thread writes each group with one write and one
+// fsync, so concurrent appenders share the cost of a flush instead of paying one each.
+// A group is committed once maxBatchBytes of records are waiting or maxDelay after its
+// first record, whichever comes first; appenders block while a full group waits for the
+// one ahead of it to reach disk.
+//
+// On disk every group is an int record count, the CRC32C of its records, then the records
+// as TransactionRecords. On open, the first short or mismatching group is taken to be a
+// commit that never completed and is truncated along with everything after it. Replay
+// can start at a group boundary recorded earlier (a snapshot keeps one), so a restart
+// after a snapshot reads only the groups written since.
+public class WriteAheadLog implements Closeable {
+    public static final Duration DEFAULT_MAX_DELAY = Duration.ofMillis(1);
+    public static final int DEFAULT_MAX_BATCH_BYTES = 1 << 16;
+    static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+    record Position(long offset, long records) {
+    }
+
+    final FileChannel channel;
+    final long maxDelayNanos;
+    final ReentrantLock lock = new ReentrantLock();
+    final Condition pendingAvailable = lock.newCondition();
+    final Condition spaceAvailable = lock.newCondition();
+    final Thread committer;
+    final AtomicLong groupCommits = new AtomicLong();
+    ByteBuffer filling;
+    ByteBuffer flushing;
+    CompletableFuture<Long> fillingCommit = new CompletableFuture<>();
+    CompletableFuture<Long> flushingCommit;
+    long firstPendingNanos;
+    long size;
+    // the end of the last group on disk; only the committer moves it after open
+    volatile Position durable;
+    IOException failure;
+    boolean closed;
+
+    public WriteAheadLog(Path file) throws IOException {
+        this(file, DEFAULT_MAX_DELAY, DEFAULT_MAX_BATCH_BYTES);
+    }
+
+    public WriteAheadLog(Path file, Duration maxDelay, int maxBatchBytes) throws IOException {
+        if (maxDelay.isNegative() || maxBatchBytes < TransactionRecord.BYTES) {
+            throw new IllegalArgumentException("Delay must be non-negative and a batch must fit at least one record");
+        }
+
+        this.maxDelayNanos = maxDelay.toNanos();
+        var capacity = HEADER_BYTES + maxBatchBytes / TransactionRecord.BYTES * TransactionRecord.BYTES;
+        this.filling = ByteBuffer.allocateDirect(capacity).position(HEADER_BYTES);
+        this.flushing = ByteBuffer.allocateDirect(capacity);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        var end = scan(new Position(0, 0), 0, null);
+        if (end.offset() < channel.size()) {
+            channel.truncate(end.offset());
+            channel.force(true);
+        }
+        channel.position(end.offset());
+        size = end.records();
+        durable = end;
+        committer = Thread.ofPlatform().daemon().name("fesadyab-wal-committer").start(this::commitLoop);
+    }
+
+    // Returns a future that completes with the durable size of the log once the group
+    // holding this record is on disk. Records appended into the same group share one future.
+    public CompletableFuture<Long> append(int transactionId, int accountId, int amount, boolean isDebit) {
+        lock.lock();
+        try {
+            while (filling.remaining() < TransactionRecord.BYTES) {
+                ensureWritable();
+                spaceAvailable.awaitUninterruptibly();
+            }
+            ensureWritable();
+
+            var position = filling.position();
+            if (position == HEADER_BYTES) {
+                firstPendingNanos = System.nanoTime();
+                pendingAvailable.signal();
+            }
+            TransactionRecord.write(filling, position, transactionId, accountId, amount, isDebit);
+            filling.position(position + TransactionRecord.BYTES);
+            if (filling.remaining() < TransactionRecord.BYTES) {
+                pendingAvailable.signal();
+            }
+            size++;
+            return fillingCommit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Completes once everything appended so far is durable.
+    public CompletableFuture<Long> commit() {
+        lock.lock();
+        try {
+            if (filling.position() > HEADER_BYTES) {
+                return fillingCommit;
+            }
+            if (flushingCommit != null) {
+                return flushingCommit;
+            }
+            return failure == null ? CompletableFuture.completedFuture(durable.records())
+                    : CompletableFuture.failedFuture(failure);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long replay(TransactionSink sink) throws IOException {
+        return replay(0, sink);
+    }
+
+    // Replays the durable records from the given sequence on.
+    public long replay(long fromSequence, TransactionSink sink) throws IOException {
+        return Math.max(0, scan(new Position(0, 0), fromSequence, sink).records() - fromSequence);
+    }
+
+    // Replays from a group boundary taken from durablePosition() earlier, without reading
+    // the groups before it. Throws if the walk does not end where the log does, which means
+    // the position came from a different file.
+    long replay(Position from, TransactionSink sink) throws IOException {
+        var end = scan(from, from.records(), sink);
+        if (end.offset() != channel.position()) {
+            throw new IOException("Snapshot does not match the write-ahead log");
+        }
+        return end.records() - from.records();
+    }
+
+    public long size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long durableSize() {
+        return durable.records();
+    }
+
+    Position durablePosition() {
+        return durable;
+    }
+
+    public long getGroupCommitCount() {
+        return groupCommits.get();
+    }
+
+    // Commits whatever is still pending, then closes the file.
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            pendingAvailable.signal();
+            spaceAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void ensureWritable() {
+        if (failure != null) {
+            throw new UncheckedIOException("Write-ahead log failed", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Write-ahead log is closed");
+        }
+    }
+
+    private void commitLoop() {
+        while (true) {
+            ByteBuffer group;
+            CompletableFuture<Long> commit;
+            Position groupEnd;
+            lock.lock();
+            try {
+                while (filling.position() == HEADER_BYTES && !closed) {
+                    pendingAvailable.awaitUninterruptibly();
+                }
+                if (filling.position() == HEADER_BYTES) {
+                    return;
+                }
+                // give concurrent appenders until the deadline to join this group
+                while (!closed && filling.remaining() >= TransactionRecord.BYTES) {
+                    var remaining = firstPendingNanos + maxDelayNanos - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    try {
+                        pendingAvailable.awaitNanos(remaining);
+                    } catch (InterruptedException ignored) {
+                        // only close() stops the committer
+                    }
+                }
+
+                group = filling;
+                filling = flushing;
+                flushing = group;
+                filling.clear().position(HEADER_BYTES);
+                commit = fillingCommit;
+                flushingCommit = commit;
+                fillingCommit = new CompletableFuture<>();
+                groupEnd = new Position(durable.offset() + group.position(), size);
+                spaceAvailable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                write(group);
+                channel.force(false);
+            } catch (IOException e) {
+                fail(e, commit);
+                return;
+            }
+
+            durable = groupEnd;
+            groupCommits.getAndIncrement();
+            commit.complete(groupEnd.records());
+            lock.lock();
+            try {
+                if (flushingCommit == commit) {
+                    flushingCommit = null;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void write(ByteBuffer group) throws IOException {
+        group.flip();
+        var crc = new CRC32C();
+        crc.update(group.slice(HEADER_BYTES, group.limit() - HEADER_BYTES));
+        group.putInt(0, (group.limit() - HEADER_BYTES) / TransactionRecord.BYTES);
+        group.putInt(Integer.BYTES, (int) crc.getValue());
+        while (group.hasRemaining()) {
+            channel.write(group);
+        }
+    }
+
+    private void fail(IOException e, CompletableFuture<Long> commit) {
+        CompletableFuture<Long> pending;
+        lock.lock();
+        try {
+            failure = e;
+            pending = fillingCommit;
+            flushingCommit = null;
+            spaceAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        commit.completeExceptionally(e);
+        pending.completeExceptionally(e);
+    }
+
+    // Walks the groups from start, handing records from fromSequence on to the sink. Stops
+    // at the first incomplete or corrupt group and returns where it ended.
+    private Position scan(Position start, long fromSequence, TransactionSink sink) throws IOException {
+        var end = sink == null ? channel.size() : channel.position();
+        var header = ByteBuffer.allocate(HEADER_BYTES);
+        var records = ByteBuffer.allocate(0);
+        var offset = start.offset();
+        var sequence = start.records();
+        while (offset + HEADER_BYTES <= end) {
+            readFully(header.clear(), offset);
+            var count = header.getInt(0);
+            var groupBytes = (long) count * TransactionRecord.BYTES;
+            if (count <= 0 || groupBytes > Integer.MAX_VALUE || offset + HEADER_BYTES + groupBytes > end) {
+                break;
+            }
+            if (records.capacity() < groupBytes) {
+                records = ByteBuffer.allocate((int) groupBytes);
+            }
+            readFully(records.clear().limit((int) groupBytes), offset + HEADER_BYTES);
+            var crc = new CRC32C();
+            crc.update(records.flip());
+            if ((int) crc.getValue() != header.getInt(Integer.BYTES)) {
+                break;
+            }
+
+            if (sink != null && sequence + count > fromSequence) {
+                for (var i = (int) Math.max(0, fromSequence - sequence); i < count; i++) {
+                    TransactionRecord.read(records, i * TransactionRecord.BYTES, sink);
+                }
+            }
+            offset += HEADER_BYTES + groupBytes;
+            sequence += count;
+        }
+        return new Position(offset, sequence);
+    }
+
+    private void readFully(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of write-ahead log");
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package domain;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AccountAggregatesTest {
+    AccountAggregates aggregates;
+
+    @BeforeEach
+    public void setUp() {
+        aggregates = new AccountAggregates();
+    }
+
+    @Test
+    public void testGetAverage_UnknownAccount() {
+        assertEquals(0, aggregates.getAverage(42));
+        assertEquals(0, aggregates.getCount(42));
+        assertEquals(0, aggregates.getSum(42));
+    }
+
+    @Test
+    public void testAdd_TracksSumAndCountPerAccount() {
+        aggregates.add(1, 100);
+        aggregates.add(1, 250);
+        aggregates.add(2, 40);
+
+        assertEquals(350, aggregates.getSum(1));
+        assertEquals(2, aggregates.getCount(1));
+        assertEquals(175, aggregates.getAverage(1));
+        assertEquals(40, aggregates.getAverage(2));
+        assertEquals(2, aggregates.size());
+    }
+
+    @Test
+    public void testAdd_LargeAmountsDoNotOverflow() {
+        aggregates.add(1, Integer.MAX_VALUE);
+        aggregates.add(1, Integer.MAX_VALUE);
+
+        assertEquals(2L * Integer.MAX_VALUE, aggregates.getSum(1));
+        assertEquals(Integer.MAX_VALUE, aggregates.getAverage(1));
+    }
+
+    @Test
+    public void testAdd_NegativeAndZeroAccountIds() {
+        aggregates.add(0, 10);
+        aggregates.add(-5, 30);
+
+        assertEquals(10, aggregates.getAverage(0));
+        assertEquals(30, aggregates.getAverage(-5));
+    }
+
+    @Test
+    public void testAdd_ManyAccountsSurviveGrowth() {
+        for (var accountId = 0; accountId < 10_000; accountId++) {
+            aggregates.add(accountId * 31, accountId);
+            aggregates.add(accountId * 31, accountId + 2);
+        }
+
+        assertEquals(10_000, aggregates.size());
+        for (var accountId = 0; accountId < 10_000; accountId++) {
+            assertEquals(accountId + 1, aggregates.getAverage(accountId * 31));
+        }
+    }
+
+    @Test
+    public void testRelease_SlotIsReusedAndOtherAccountsStayReachable() {
+        for (var accountId = 0; accountId < 1_000; accountId++) {
+            aggregates.add(accountId, accountId);
+        }
+        for (var accountId = 0; accountId < 1_000; accountId += 2) {
+            var slot = aggregates.find(accountId);
+            aggregates.removeFromSlot(slot, accountId);
+            assertTrue(aggregates.release(slot));
+            assertFalse(aggregates.release(slot));
+        }
+
+        assertEquals(500, aggregates.size());
+        assertFalse(aggregates.release(aggregates.find(1)));
+        for (var accountId = 0; accountId < 1_000; accountId++) {
+            assertEquals(accountId % 2 == 0 ? 0 : accountId, aggregates.getAverage(accountId));
+        }
+
+        for (var accountId = 1_000; accountId < 1_500; accountId++) {
+            aggregates.add(accountId, 7);
+        }
+        // the released slots were reused instead of growing the columns
+        assertEquals(1_000, aggregates.size);
+        for (var accountId = 1_000; accountId < 1_500; accountId++) {
+            assertEquals(7, aggregates.getAverage(accountId));
+        }
+    }
+
+    @Test
+    public void testClear() {
+        aggregates.add(1, 100);
+        aggregates.clear();
+
+        assertEquals(0, aggregates.size());
+        assertEquals(0, aggregates.getCount(1));
+    }
+}
@@ -0,0 +1,165 @@
+package domain;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AccountHistoryIndexTest {
+    @TempDir
+    Path directory;
+
+    private static TransactionEngine engine(RetentionPolicy retention, int topK) {
+        var options = new EngineOptions();
+        options.setRetentionPolicy(retention);
+        options.setAccountIndexEnabled(true);
+        options.setTopDebitsPerAccount(topK);
+        return new TransactionEngine(options);
+    }
+
+    // live transactions of the account, oldest first, found by scanning the whole history
+    private static List<Transaction> scan(TransactionEngine engine, int accountId) {
+        var live = new ArrayList<Transaction>();
+        for (var txn : engine.getTransactionHistory()) {
+            if (txn.accountId == accountId) {
+                live.add(txn);
+            }
+        }
+        var window = engine.options.getRetentionPolicy().maxPerAccount();
+        return window > 0 && live.size() > window ? live.subList(live.size() - window, live.size()) : live;
+    }
+
+    private static void assertMatchesScan(TransactionEngine engine, int accounts, int n, int topK) {
+        for (var account = 0; account < accounts; account++) {
+            var live = scan(engine, account);
+
+            var last = new ArrayList<Transaction>();
+            for (var i = live.size() - 1; i >= 0 && last.size() < n; i--) {
+                last.add(live.get(i));
+            }
+            assertEquals(last, engine.getLastTransactions(account, n));
+
+            var debits = new ArrayList<Transaction>();
+            for (var i = live.size() - 1; i >= 0; i--) {
+                if (live.get(i).isDebit) {
+                    debits.add(live.get(i));
+                }
+            }
+            // stable sort over newest-first keeps the newer of two equal amounts first
+            debits.sort(Comparator.comparingInt((Transaction txn) -> txn.amount).reversed());
+            var top = engine.getTopDebits(account);
+            assertEquals(debits.subList(0, Math.min(topK, debits.size())), top);
+            for (var i = 0; i < top.size(); i++) {
+                assertEquals(debits.get(i).amount, top.get(i).amount);
+            }
+        }
+    }
+
+    private static void feed(TransactionEngine engine, Random random, int count, int accounts, int firstId) {
+        for (var i = 0; i < count; i++) {
+            engine.addAndScore(firstId + i, random.nextInt(accounts), random.nextInt(200), random.nextInt(3) == 0);
+        }
+    }
+
+    @Test
+    public void testQueries_ThrowWhenIndexDisabled() {
+        var plain = new TransactionEngine();
+
+        assertThrows(IllegalStateException.class, () -> plain.getLastTransactions(1, 5));
+        assertThrows(IllegalStateException.class, () -> plain.getTopDebits(1));
+    }
+
+    @Test
+    public void testQueries_UnknownAccountIsEmpty() {
+        var engine = engine(RetentionPolicy.UNBOUNDED, 3);
+
+        assertTrue(engine.getLastTransactions(9, 5).isEmpty());
+        assertTrue(engine.getTopDebits(9).isEmpty());
+    }
+
+    @Test
+    public void testQueries_Unbounded() {
+        var engine = engine(RetentionPolicy.UNBOUNDED, 5);
+        feed(engine, new Random(1), 5_000, 40, 1);
+
+        assertMatchesScan(engine, 40, 50, 5);
+        assertEquals(3, engine.getLastTransactions(0, 3).size());
+    }
+
+    @Test
+    public void testQueries_MaxTransactionsEvictsTopDebits() {
+        var engine = engine(RetentionPolicy.maxTransactions(500), 4);
+        var random = new Random(2);
+        for (var round = 0; round < 10; round++) {
+            feed(engine, random, 700, 25, 1 + round * 700);
+            assertMatchesScan(engine, 25, 30, 4);
+        }
+    }
+
+    @Test
+    public void testQueries_EvictedTopDebitIsRefilledOnRead() {
+        var options = new EngineOptions();
+        options.setRetentionPolicy(RetentionPolicy.maxTransactions(100));
+        options.setAccountIndexEnabled(true);
+        options.setTopDebitsPerAccount(3);
+        options.setConcurrentReadsEnabled(true);
+        var engine = new TransactionEngine(options);
+        // falling amounts keep the oldest debits on top, so every eviction hits the heap
+        for (var i = 0; i < 1_000; i++) {
+            engine.addAndScore(i, 1, 10_000 - i, true);
+        }
+        var slot = engine.accountAggregates.find(1);
+        assertTrue(engine.accountIndex.isStale(slot));
+
+        assertMatchesScan(engine, 2, 5, 3);
+        assertFalse(engine.accountIndex.isStale(slot));
+        assertEquals(9_100, engine.getTopDebits(1).get(0).amount);
+    }
+
+    @Test
+    public void testQueries_LastPerAccountWithMaxTransactions() {
+        var engine = engine(new RetentionPolicy(800, 12), 3);
+        var random = new Random(3);
+        for (var round = 0; round < 10; round++) {
+            feed(engine, random, 600, 60, 1 + round * 600);
+            assertMatchesScan(engine, 60, 20, 3);
+        }
+    }
+
+    @Test
+    public void testRebuildIndexes_KeepsAccountIndexConsistent() {
+        var engine = engine(RetentionPolicy.UNBOUNDED, 3);
+        feed(engine, new Random(4), 1_000, 10, 1);
+
+        engine.rebuildIndexes();
+
+        assertMatchesScan(engine, 10, 15, 3);
+    }
+
+    @Test
+    public void testSnapshotRestore_RebuildsAccountIndex() throws IOException {
+        var retention = new RetentionPolicy(1_000, 9);
+        var original = engine(retention, 4);
+        var random = new Random(5);
+        feed(original, random, 3_000, 30, 1);
+        var snapshot = directory.resolve("engine.snap");
+        original.writeSnapshot(snapshot, true);
+
+        var options = new EngineOptions();
+        options.setRetentionPolicy(retention);
+        options.setAccountIndexEnabled(true);
+        options.setTopDebitsPerAccount(4);
+        var restored = new TransactionEngine(options, snapshot);
+
+        assertMatchesScan(restored, 30, 10, 4);
+        feed(restored, random, 2_000, 30, 3_001);
+        assertMatchesScan(restored, 30, 10, 4);
+    }
+}
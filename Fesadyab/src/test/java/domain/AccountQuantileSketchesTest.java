@@ -0,0 +1,141 @@
+package domain;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AccountQuantileSketchesTest {
+    private AccountQuantileSketches sketches;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    public void setUp() {
+        sketches = new AccountQuantileSketches(256, 0.02);
+    }
+
+    private static double exactQuantile(int[] sorted, double q) {
+        return sorted[Math.max(1, (int) Math.ceil(q * sorted.length)) - 1];
+    }
+
+    @Test
+    public void testConstructor_RejectsInvalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new AccountQuantileSketches(1, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new AccountQuantileSketches(64, 0));
+    }
+
+    @Test
+    public void testQuantile_EmptySketchIsZero() {
+        assertEquals(0, sketches.quantile(3, 0.99));
+        assertEquals(0, sketches.count(3));
+    }
+
+    @Test
+    public void testQuantile_WithinRelativeAccuracy() {
+        var random = new Random(21);
+        var values = new int[20_000];
+        for (var i = 0; i < values.length; i++) {
+            // log-normal-ish amounts with a heavy tail
+            values[i] = 1 + (int) Math.exp(5 + 1.5 * random.nextGaussian());
+            sketches.add(4, values[i]);
+        }
+        Arrays.sort(values);
+
+        for (var q : new double[]{0.01, 0.25, 0.5, 0.9, 0.99, 0.999}) {
+            var exact = exactQuantile(values, q);
+            assertEquals(exact, sketches.quantile(4, q), 0.021 * exact + 1, "q=" + q);
+        }
+    }
+
+    @Test
+    public void testRemove_UndoesAdd() {
+        for (var amount = 1; amount <= 100; amount++) {
+            sketches.add(0, amount);
+        }
+        sketches.add(0, 1_000_000);
+
+        sketches.remove(0, 1_000_000);
+
+        assertEquals(100, sketches.count(0));
+        assertEquals(99, sketches.quantile(0, 0.99), 99 * 0.021);
+    }
+
+    @Test
+    public void testMerge_EqualsSketchOfCombinedStream() {
+        var left = new AccountQuantileSketches(128, 0.05);
+        var right = new AccountQuantileSketches(128, 0.05);
+        var combined = new AccountQuantileSketches(128, 0.05);
+        var random = new Random(22);
+        for (var i = 0; i < 5_000; i++) {
+            var amount = random.nextInt(100_000) - 10;
+            (i % 2 == 0 ? left : right).add(i % 2 == 0 ? 2 : 5, amount);
+            combined.add(0, amount);
+        }
+
+        var merged = left.copy(2);
+        merged.merge(0, right, 5);
+
+        assertEquals(combined.count(0), merged.count(0));
+        for (var q = 0.05; q < 1; q += 0.05) {
+            assertEquals(combined.quantile(0, q), merged.quantile(0, q));
+        }
+        assertThrows(IllegalArgumentException.class, () -> merged.merge(0, sketches, 0));
+    }
+
+    @Test
+    public void testPercentileDebitRule_FlagsDebitsAboveAccountP99() {
+        var options = new EngineOptions();
+        options.setQuantileSketchesEnabled(true);
+        options.setFraudRules(List.of(new PercentileDebitRule(99, 100)));
+        var engine = new TransactionEngine(options);
+        for (var i = 1; i <= 200; i++) {
+            assertEquals(0, engine.addAndScore(i, 1, 100 + i % 50, false));
+        }
+        // one huge outlier hardly moves the p99, unlike the mean
+        engine.addAndScore(201, 1, 1_000_000, false);
+        assertEquals(149, engine.getAccountQuantile(1, 0.99), 149 * 0.06);
+
+        assertEquals(0, engine.addAndScore(202, 1, 140, true));
+        assertTrue(engine.addAndScore(203, 1, 400, true) > 0);
+        assertEquals(0, engine.addAndScore(204, 1, 400, false));
+        assertThrows(IllegalStateException.class, () -> new TransactionEngine().getAccountQuantile(1, 0.5));
+    }
+
+    @Test
+    public void testPercentileDebitRule_EngineRejectsItWithoutSketches() {
+        var options = new EngineOptions();
+        options.setFraudRules(List.of(new PercentileDebitRule()));
+
+        assertThrows(IllegalArgumentException.class, () -> new TransactionEngine(options));
+    }
+
+    @Test
+    public void testEngine_SketchesFollowRetentionAndSnapshots() throws IOException {
+        var options = new EngineOptions();
+        options.setQuantileSketchesEnabled(true);
+        options.setRetentionPolicy(RetentionPolicy.lastPerAccount(10, 1_000));
+        var engine = new TransactionEngine(options);
+        for (var i = 1; i <= 100; i++) {
+            engine.addAndScore(i, 1, i <= 90 ? 10_000 : 10, false);
+        }
+
+        assertEquals(10, engine.getAccountSketch(1).count(0));
+        assertEquals(10, engine.getAccountQuantile(1, 0.99), 10 * 0.06);
+
+        var snapshot = directory.resolve("engine.snap");
+        engine.writeSnapshot(snapshot, true);
+        var restored = new TransactionEngine(options, snapshot);
+        assertEquals(engine.getAccountQuantile(1, 0.5), restored.getAccountQuantile(1, 0.5));
+        restored.addAndScore(101, 1, 10_000, false);
+        assertEquals(10, restored.getAccountSketch(1).count(0));
+    }
+}
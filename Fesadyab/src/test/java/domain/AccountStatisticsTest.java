@@ -0,0 +1,116 @@
+package domain;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AccountStatisticsTest {
+    private AccountStatistics statistics;
+
+    @BeforeEach
+    public void setUp() {
+        statistics = new AccountStatistics(0.5);
+    }
+
+    @Test
+    public void testConstructor_RejectsAlphaOutsideUnitInterval() {
+        assertThrows(IllegalArgumentException.class, () -> new AccountStatistics(0));
+        assertThrows(IllegalArgumentException.class, () -> new AccountStatistics(1.5));
+    }
+
+    @Test
+    public void testGet_UnknownSlotIsEmpty() {
+        assertEquals(AccountStatistics.Stats.EMPTY, statistics.get(100));
+    }
+
+    @Test
+    public void testAccept_TracksMeanEwmaMinMax() {
+        statistics.accept(0, 100);
+        statistics.accept(0, 300);
+        statistics.accept(0, 200);
+
+        var stats = statistics.get(0);
+
+        assertEquals(3, stats.count());
+        assertEquals(200, stats.mean(), 1e-9);
+        assertEquals(20_000.0 / 3, stats.variance(), 1e-9);
+        assertEquals(200, stats.ewma(), 1e-9);
+        assertEquals(100, stats.min());
+        assertEquals(300, stats.max());
+    }
+
+    @Test
+    public void testAccept_MatchesTwoPassVarianceAcrossManySlots() {
+        var random = new Random(5);
+        var sums = new double[200];
+        var counts = new int[200];
+        var values = new int[200][500];
+        for (var i = 0; i < 40_000; i++) {
+            var slot = random.nextInt(200);
+            if (counts[slot] == 500) {
+                continue;
+            }
+            var amount = random.nextInt(1_000_000);
+            statistics.accept(slot, amount);
+            values[slot][counts[slot]++] = amount;
+            sums[slot] += amount;
+        }
+
+        for (var slot = 0; slot < 200; slot++) {
+            var mean = sums[slot] / counts[slot];
+            var squares = 0.0;
+            for (var i = 0; i < counts[slot]; i++) {
+                squares += (values[slot][i] - mean) * (values[slot][i] - mean);
+            }
+            assertEquals(mean, statistics.mean(slot), 1e-6);
+            assertEquals(squares / counts[slot], statistics.variance(slot), 1e-3 * squares / counts[slot]);
+        }
+    }
+
+    @Test
+    public void testEngine_ExposesStatisticsPerAccount() {
+        var options = new EngineOptions();
+        options.setAccountStatisticsEnabled(true);
+        var engine = new TransactionEngine(options);
+
+        engine.addTransactionAndDetectFraud(new Transaction(1, 7, 100, false));
+        engine.addTransactionAndDetectFraud(new Transaction(2, 7, 300, true));
+        engine.addTransactionAndDetectFraud(new Transaction(2, 7, 900, true));
+
+        var stats = engine.getAccountStatistics(7);
+        assertEquals(2, stats.count());
+        assertEquals(200, stats.mean(), 1e-9);
+        assertEquals(100, stats.standardDeviation(), 1e-9);
+        assertEquals(AccountStatistics.Stats.EMPTY, engine.getAccountStatistics(8));
+        assertThrows(IllegalStateException.class, () -> new TransactionEngine().getAccountStatistics(7));
+    }
+
+    @Test
+    public void testDeviationRule_FlagsDebitsFarAboveTheAccountMean() {
+        var options = new EngineOptions();
+        options.setAccountStatisticsEnabled(true);
+        var rule = new DeviationRule(3, 10);
+        options.setFraudRules(List.of(rule));
+        var engine = new TransactionEngine(options);
+        for (var i = 1; i <= 10; i++) {
+            assertEquals(0, engine.addTransactionAndDetectFraud(new Transaction(i, 1, i % 2 == 0 ? 90 : 110, false)));
+        }
+
+        assertEquals(0, engine.addTransactionAndDetectFraud(new Transaction(11, 1, 125, true)));
+        var slot = engine.accountAggregates.find(1);
+        assertEquals(0, rule.score(engine, slot, 5_000, false));
+        assertTrue(engine.addTransactionAndDetectFraud(new Transaction(12, 1, 2_000, true)) > 0);
+    }
+
+    @Test
+    public void testDeviationRule_EngineRejectsItWithoutStatistics() {
+        var options = new EngineOptions();
+        options.setFraudRules(List.of(new DeviationRule()));
+
+        assertThrows(IllegalArgumentException.class, () -> new TransactionEngine(options));
+    }
+}
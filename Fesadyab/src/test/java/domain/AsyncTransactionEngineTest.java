@@ -0,0 +1,184 @@
+package domain;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncTransactionEngineTest {
+    private AsyncTransactionEngine asyncEngine;
+
+    @BeforeEach
+    public void setUp() {
+        asyncEngine = new AsyncTransactionEngine(new TransactionEngine(), 4096, 64, Duration.ofMillis(1));
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        asyncEngine.close();
+    }
+
+    @Test
+    public void testSubmit_ScoresLikeSequentialEngineInSubmissionOrder() throws Exception {
+        var reference = new TransactionEngine();
+        var random = new Random(3);
+        var futures = new ArrayList<CompletableFuture<Integer>>();
+        var expected = new ArrayList<Integer>();
+        for (var i = 0; i < 2_000; i++) {
+            var txn = new Transaction(random.nextInt(1_500), random.nextInt(30), random.nextInt(3_000), random.nextBoolean());
+            expected.add(reference.addTransactionAndDetectFraud(txn));
+            futures.add(asyncEngine.submit(txn));
+        }
+
+        for (var i = 0; i < futures.size(); i++) {
+            assertEquals(expected.get(i), futures.get(i).get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(2_000, asyncEngine.getScoredCount());
+    }
+
+    @Test
+    public void testSubmit_SingleTransactionCompletesAfterBatchDelay() throws Exception {
+        var score = asyncEngine.submit(new Transaction(1, 1, 100, false)).get(5, TimeUnit.SECONDS);
+
+        assertEquals(0, score);
+        assertEquals(1, asyncEngine.getBatchCount());
+    }
+
+    @Test
+    public void testSubmit_ConcurrentVirtualThreadCallersAllComplete() throws Exception {
+        var engine = new TransactionEngine();
+        var callers = 32;
+        var perCaller = 200;
+        try (var async = new AsyncTransactionEngine(engine, 16_384, 128, Duration.ofMillis(1));
+             var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var done = new ArrayList<Future<?>>();
+            for (var c = 0; c < callers; c++) {
+                var caller = c;
+                done.add(executor.submit(() -> {
+                    for (var i = 0; i < perCaller; i++) {
+                        var id = caller * perCaller + i;
+                        async.submit(new Transaction(id, id % 17, 10 + id % 500, id % 3 == 0)).join();
+                    }
+                    return null;
+                }));
+            }
+            for (var future : done) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+
+            assertEquals(callers * perCaller, async.getScoredCount());
+            assertTrue(async.getBatchCount() <= async.getScoredCount());
+        }
+        assertEquals(callers * perCaller, engine.getTransactionHistory().size());
+    }
+
+    @Test
+    public void testSubmit_FailsFastWhenQueueIsFull() throws Exception {
+        var entered = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        FraudRule blocking = (engine, slot, amount, isDebit) -> {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 0;
+        };
+        var options = new EngineOptions();
+        options.setFraudRules(List.of(blocking));
+
+        try (var async = new AsyncTransactionEngine(new TransactionEngine(options), 1, 1, Duration.ZERO)) {
+            var first = async.submit(new Transaction(1, 1, 100, false));
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+            var queued = async.submit(new Transaction(2, 1, 100, false));
+            var rejected = async.submit(new Transaction(3, 1, 100, false));
+
+            var error = assertThrows(ExecutionException.class, rejected::get);
+            assertInstanceOf(RejectedExecutionException.class, error.getCause());
+
+            release.countDown();
+            assertEquals(0, first.get(5, TimeUnit.SECONDS));
+            assertEquals(0, queued.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testSubmit_FailureFailsOnlyItsOwnTransaction() throws Exception {
+        FraudRule failing = (engine, slot, amount, isDebit) -> {
+            if (amount == 666) {
+                throw new IllegalStateException("rule down");
+            }
+            return 0;
+        };
+        var options = new EngineOptions();
+        options.setFraudRules(List.of(failing));
+        var engine = new TransactionEngine(options);
+
+        try (var async = new AsyncTransactionEngine(engine, 16, 16, Duration.ofMillis(50))) {
+            var before = async.submit(new Transaction(1, 1, 100, false));
+            var failed = async.submit(new Transaction(2, 1, 666, false));
+            var after = async.submit(new Transaction(3, 1, 100, false));
+
+            assertEquals(0, before.get(5, TimeUnit.SECONDS));
+            var error = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, error.getCause());
+            assertEquals(0, after.get(5, TimeUnit.SECONDS));
+            assertEquals(2, async.getScoredCount());
+        }
+        assertEquals(2, engine.getHistorySize());
+    }
+
+    @Test
+    public void testClose_ScoresQueuedWorkAndRejectsNewSubmissions() throws Exception {
+        var pending = asyncEngine.submit(new Transaction(1, 1, 100, false));
+
+        asyncEngine.close();
+
+        assertEquals(0, pending.get(5, TimeUnit.SECONDS));
+        var error = assertThrows(ExecutionException.class, () -> asyncEngine.submit(new Transaction(2, 1, 1, false)).get());
+        assertInstanceOf(RejectedExecutionException.class, error.getCause());
+    }
+
+    @Test
+    public void testClose_RacingSubmissionsAllComplete() throws Exception {
+        for (var round = 0; round < 50; round++) {
+            var async = new AsyncTransactionEngine(new TransactionEngine(), 4096, 64, Duration.ZERO);
+            var futures = new ArrayList<CompletableFuture<Integer>>();
+            var submitter = Thread.ofPlatform().start(() -> {
+                for (var i = 0; i < 2_000; i++) {
+                    var future = async.submit(new Transaction(i, i % 5, 100, true));
+                    synchronized (futures) {
+                        futures.add(future);
+                    }
+                }
+            });
+
+            async.close();
+            submitter.join();
+
+            // every future is either scored or rejected; none is stranded in the queue
+            for (var future : futures) {
+                try {
+                    future.get(5, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    assertInstanceOf(RejectedExecutionException.class, e.getCause());
+                }
+            }
+            assertEquals(0, async.getQueueDepth());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package domain;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BloomFilterTest {
+
+    @Test
+    public void testConstructor_RejectsInvalidSizing() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 1));
+    }
+
+    @Test
+    public void testMightContain_NoFalseNegatives() {
+        var filter = new BloomFilter(100_000, 0.01);
+        for (var i = 0; i < 100_000; i++) {
+            filter.put(i * 7 - 350_000);
+        }
+
+        for (var i = 0; i < 100_000; i++) {
+            assertTrue(filter.mightContain(i * 7 - 350_000));
+        }
+    }
+
+    @Test
+    public void testMightContain_FalsePositiveRateNearTarget() {
+        var filter = new BloomFilter(200_000, 0.01);
+        for (var i = 0; i < 200_000; i++) {
+            filter.put(i);
+        }
+
+        var falsePositives = 0;
+        for (var i = 0; i < 200_000; i++) {
+            if (filter.mightContain(1_000_000 + i)) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives / 200_000.0 < 0.015, "observed " + falsePositives / 200_000.0);
+        assertTrue(filter.expectedFalsePositiveRate(200_000) <= 0.01);
+        assertTrue(filter.memoryBytes() < 200_000 * 2L);
+    }
+
+    @Test
+    public void testClear_ForgetsKeys() {
+        var filter = new BloomFilter(1_000, 0.01);
+        filter.put(42);
+
+        filter.clear();
+
+        assertFalse(filter.mightContain(42));
+    }
+}
@@ -0,0 +1,196 @@
+package domain;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class ConcurrentTransactionEngineTest {
+    ConcurrentTransactionEngine engine;
+
+    // records the transactionId accepted at each sequence number
+    static class RecordingEngine extends ConcurrentTransactionEngine {
+        final int[] acceptedOrder;
+
+        RecordingEngine(int capacity) {
+            acceptedOrder = new int[capacity];
+        }
+
+        @Override
+        int acceptPattern(long sequence, int transactionId, int amount) {
+            acceptedOrder[(int) sequence] = transactionId;
+            return super.acceptPattern(sequence, transactionId, amount);
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        engine = new ConcurrentTransactionEngine();
+    }
+
+    @Test
+    public void testConstructor_RejectsNonPowerOfTwoStripes() {
+        assertThrows(IllegalArgumentException.class, () -> new ConcurrentTransactionEngine(12));
+    }
+
+    @Test
+    public void testAddTransactionAndDetectFraud_SingleThreadMatchesTransactionEngine() {
+        var random = new Random(5);
+        var sequential = new TransactionEngine();
+
+        for (var i = 0; i < 20_000; i++) {
+            var txn = new Transaction(random.nextInt(15_000), random.nextInt(100),
+                    random.nextInt(3000), random.nextBoolean());
+            assertEquals(sequential.addTransactionAndDetectFraud(txn), engine.addTransactionAndDetectFraud(txn));
+        }
+
+        assertEquals(sequential.transactionHistory.size(), engine.getHistorySize());
+        for (var accountId = 0; accountId < 100; accountId++) {
+            assertEquals(sequential.getAverageTransactionAmountByAccount(accountId),
+                    engine.getAverageTransactionAmountByAccount(accountId));
+        }
+    }
+
+    @Test
+    public void testAddTransactionsAndDetectFraud_SingleThreadMatchesTransactionEngine() {
+        var transactions = workloads(1, 20_000, new Random(6), 15_000).get(0);
+        var sequential = new TransactionEngine();
+
+        for (var from = 0; from < transactions.size(); from += 100) {
+            var batch = transactions.subList(from, from + 100);
+            assertArrayEquals(sequential.addTransactionsAndDetectFraud(batch), engine.addTransactionsAndDetectFraud(batch));
+        }
+        assertEquals(sequential.transactionHistory.size(), engine.getHistorySize());
+    }
+
+    @Test
+    public void testAddTransactionAndDetectFraud_ConcurrentMatchesSequenceOrder() throws Exception {
+        assertMatchesSequenceOrder(1);
+    }
+
+    @Test
+    public void testAddTransactionsAndDetectFraud_ConcurrentBatchesMatchSequenceOrder() throws Exception {
+        // odd threads send batches, even threads single transactions, against the same stripes
+        assertMatchesSequenceOrder(64);
+    }
+
+    private static void assertMatchesSequenceOrder(int batchSize) throws Exception {
+        var threads = 8;
+        var perThread = 20_000;
+        var workloads = workloads(threads, perThread, new Random(17), threads * perThread / 2);
+        var engine = new RecordingEngine(threads * perThread);
+
+        var scores = run(engine, workloads, batchSize);
+
+        var byId = new HashMap<Integer, Transaction>();
+        var scoreById = new HashMap<Integer, Integer>();
+        for (var t = 0; t < threads; t++) {
+            for (var i = 0; i < perThread; i++) {
+                var txn = workloads.get(t).get(i);
+                byId.putIfAbsent(txn.transactionId, txn);
+                scoreById.merge(txn.transactionId, scores[t][i], Integer::sum);
+            }
+        }
+
+        var sequential = new TransactionEngine();
+        for (var sequence = 0; sequence < engine.getHistorySize(); sequence++) {
+            var txn = byId.get(engine.acceptedOrder[sequence]);
+            assertEquals(sequential.addTransactionAndDetectFraud(txn), (int) scoreById.get(txn.transactionId));
+        }
+        assertEquals(byId.size(), engine.getHistorySize());
+    }
+
+    @Test
+    public void testThroughput_ScalesWithThreads() throws Exception {
+        var threads = 8;
+        assumeTrue(Runtime.getRuntime().availableProcessors() >= threads, "needs at least 8 cores to show scaling");
+        var perThread = 200_000;
+
+        // warm up both shapes before timing
+        throughput(1, perThread);
+        throughput(threads, perThread);
+        var single = throughput(1, perThread);
+        var parallel = throughput(threads, perThread);
+
+        assertTrue(parallel > 1.5 * single, "8 threads reached " + parallel + " txn/s against " + single + " on one");
+    }
+
+    private static double throughput(int threads, int perThread) throws Exception {
+        var workloads = workloads(threads, perThread, new Random(threads), 0);
+        var concurrent = new ConcurrentTransactionEngine();
+
+        var start = System.nanoTime();
+        run(concurrent, workloads, 1);
+        var elapsed = System.nanoTime() - start;
+
+        assertEquals((long) threads * perThread, concurrent.getHistorySize());
+        return threads * perThread / (elapsed / 1e9);
+    }
+
+    private static List<List<Transaction>> workloads(int threads, int perThread, Random random, int sharedIds) {
+        var workloads = new ArrayList<List<Transaction>>();
+        for (var t = 0; t < threads; t++) {
+            var workload = new ArrayList<Transaction>(perThread);
+            for (var i = 0; i < perThread; i++) {
+                // replays of a shared id carry the same payload, whichever thread wins the race
+                var transactionId = sharedIds > 0 ? random.nextInt(sharedIds) : t * perThread + i;
+                var payload = new Random(transactionId);
+                workload.add(new Transaction(transactionId, payload.nextInt(1000),
+                        payload.nextInt(1500), payload.nextInt(4) == 0));
+            }
+            workloads.add(workload);
+        }
+        return workloads;
+    }
+
+    private static int[][] run(ConcurrentTransactionEngine engine, List<List<Transaction>> workloads, int batchSize)
+            throws Exception {
+        var threads = workloads.size();
+        var scores = new int[threads][];
+        var ready = new CountDownLatch(threads);
+        var start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            var futures = new ArrayList<Future<?>>();
+            for (var t = 0; t < threads; t++) {
+                var index = t;
+                futures.add(executor.submit(() -> {
+                    var workload = workloads.get(index);
+                    var result = new int[workload.size()];
+                    ready.countDown();
+                    start.await();
+                    var step = index % 2 == 1 ? batchSize : 1;
+                    for (var from = 0; from < result.length; from += step) {
+                        if (step == 1) {
+                            result[from] = engine.addTransactionAndDetectFraud(workload.get(from));
+                        } else {
+                            var to = Math.min(from + step, result.length);
+                            var batch = engine.addTransactionsAndDetectFraud(workload.subList(from, to));
+                            System.arraycopy(batch, 0, result, from, batch.length);
+                        }
+                    }
+                    scores[index] = result;
+                    return null;
+                }));
+            }
+            ready.await();
+            start.countDown();
+            for (var future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return scores;
+    }
+}
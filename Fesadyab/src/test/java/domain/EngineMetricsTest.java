@@ -0,0 +1,104 @@
+package domain;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EngineMetricsTest {
+    private TransactionEngine engine;
+
+    @BeforeEach
+    public void setUp() {
+        var options = new EngineOptions();
+        options.setMetricsEnabled(true);
+        engine = new TransactionEngine(options);
+    }
+
+    @Test
+    public void testGetMetrics_ThrowsWhenDisabled() {
+        assertThrows(IllegalStateException.class, () -> new TransactionEngine().getMetrics());
+    }
+
+    @Test
+    public void testSnapshot_CountsDuplicatesAndRuleHits() {
+        engine.addTransactionAndDetectFraud(new Transaction(1, 1, 100, false));
+        engine.addTransactionAndDetectFraud(new Transaction(2, 1, 500, true));
+        engine.addTransactionAndDetectFraud(new Transaction(1, 1, 100, false));
+
+        var metrics = engine.getMetrics();
+
+        assertEquals(2, metrics.accepted());
+        assertEquals(1, metrics.duplicatesRejected());
+        assertEquals(1, metrics.rule("ExcessiveDebitRule").hits());
+        assertEquals(2, metrics.historySize());
+        assertEquals(3, metrics.total().count());
+        assertEquals(3, metrics.dedup().count());
+        assertEquals(2, metrics.rule("ExcessiveDebitRule").latency().count());
+        assertEquals(1, metrics.rule("ArithmeticPatternRule").evaluations());
+        assertTrue(metrics.total().max() >= metrics.total().p50());
+    }
+
+    @Test
+    public void testInstrumentedEngine_ScoresLikePlainEngine() {
+        var plain = new TransactionEngine();
+        var random = new Random(7);
+        var hits = 0;
+        for (var i = 0; i < 5_000; i++) {
+            var txn = new Transaction(random.nextInt(4_000), random.nextInt(50), random.nextInt(3_000), random.nextBoolean());
+            var score = engine.addTransactionAndDetectFraud(txn);
+            assertEquals(plain.addTransactionAndDetectFraud(txn), score);
+            if (score != 0) {
+                hits++;
+            }
+        }
+
+        var metrics = engine.getMetrics();
+        var excessive = metrics.rules().get(0);
+        var pattern = metrics.rules().get(1);
+        assertTrue(excessive.hits() + pattern.hits() >= hits);
+        assertEquals(5_000, metrics.accepted() + metrics.duplicatesRejected());
+        assertEquals(plain.getTransactionHistory().size(), metrics.historySize());
+    }
+
+    @Test
+    public void testBatch_IsInstrumentedPerTransaction() {
+        engine.addTransactionsAndDetectFraud(new int[]{1, 2, 2}, new int[]{1, 1, 1},
+                new int[]{100, 300, 300}, new boolean[]{false, true, true});
+
+        var metrics = engine.getMetrics();
+
+        assertEquals(2, metrics.accepted());
+        assertEquals(1, metrics.duplicatesRejected());
+        assertEquals(1, metrics.rule("ExcessiveDebitRule").hits());
+    }
+
+    @Test
+    public void testCommit_CountsAcceptedAndDuplicates() {
+        var txn = new Transaction(1, 1, 100, false);
+        engine.score(txn);
+
+        assertTrue(engine.commit(txn));
+        assertFalse(engine.commit(txn));
+
+        var metrics = engine.getMetrics();
+        assertEquals(1, metrics.accepted());
+        assertEquals(1, metrics.duplicatesRejected());
+        assertEquals(1, metrics.historySize());
+    }
+
+    @Test
+    public void testResetMetrics_ClearsCountersButKeepsHistory() {
+        engine.addTransactionAndDetectFraud(new Transaction(1, 1, 100, false));
+
+        engine.resetMetrics();
+        var metrics = engine.getMetrics();
+
+        assertEquals(0, metrics.accepted());
+        assertEquals(0, metrics.total().count());
+        assertEquals(0, metrics.rules().get(0).evaluations());
+        assertEquals(1, metrics.historySize());
+    }
+}
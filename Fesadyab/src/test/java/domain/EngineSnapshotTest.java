@@ -0,0 +1,275 @@
+package domain;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EngineSnapshotTest {
+    @TempDir
+    Path directory;
+
+    private static Transaction next(Random random) {
+        var amount = random.nextInt(5) == 0 ? 1_000 + random.nextInt(3) * 100 : random.nextInt(2_000);
+        return new Transaction(random.nextInt(20_000), random.nextInt(300), amount, random.nextBoolean());
+    }
+
+    private static void assertSameScores(TransactionEngine expected, TransactionEngine actual, Random random, int count) {
+        for (var i = 0; i < count; i++) {
+            var txn = next(random);
+            assertEquals(expected.addTransactionAndDetectFraud(txn), actual.addTransactionAndDetectFraud(txn));
+        }
+        for (var account = 0; account < 300; account++) {
+            assertEquals(expected.getAverageTransactionAmountByAccount(account),
+                    actual.getAverageTransactionAmountByAccount(account));
+        }
+    }
+
+    private static EngineOptions options(RetentionPolicy retention) {
+        var options = new EngineOptions();
+        options.setRetentionPolicy(retention);
+        return options;
+    }
+
+    @Test
+    public void testRestore_WithHistoryContinuesLikeTheOriginal() throws IOException {
+        var random = new Random(1);
+        var original = new TransactionEngine();
+        for (var i = 0; i < 10_000; i++) {
+            original.addTransactionAndDetectFraud(next(random));
+        }
+        var snapshot = directory.resolve("engine.snap");
+
+        original.writeSnapshot(snapshot, true);
+        var restored = new TransactionEngine(new EngineOptions(), snapshot);
+
+        assertEquals(original.getTransactionHistory(), restored.getTransactionHistory());
+        assertEquals(original.transactionIds.size(), restored.transactionIds.size());
+        assertSameScores(original, restored, random, 10_000);
+    }
+
+    @Test
+    public void testRestore_WithoutHistoryKeepsAveragesAndDedup() throws IOException {
+        var random = new Random(2);
+        var original = new TransactionEngine();
+        for (var i = 0; i < 5_000; i++) {
+            original.addTransactionAndDetectFraud(next(random));
+        }
+        var snapshot = directory.resolve("engine.snap");
+
+        original.writeSnapshot(snapshot, false);
+        var restored = new TransactionEngine(new EngineOptions(), snapshot);
+
+        assertTrue(restored.getTransactionHistory().isEmpty());
+        assertTrue(Files.size(snapshot) < Files.size(writeWithHistory(original)));
+        assertSameScores(original, restored, random, 5_000);
+    }
+
+    private Path writeWithHistory(TransactionEngine engine) throws IOException {
+        var path = directory.resolve("full.snap");
+        engine.writeSnapshot(path, true);
+        return path;
+    }
+
+    @Test
+    public void testRestore_BoundedRetentionKeepsEvictingTheSameTransactions() throws IOException {
+        var retention = new RetentionPolicy(3_000, 8);
+        var random = new Random(3);
+        var original = new TransactionEngine(options(retention));
+        for (var i = 0; i < 8_000; i++) {
+            original.addTransactionAndDetectFraud(next(random));
+        }
+        var snapshot = directory.resolve("engine.snap");
+
+        original.writeSnapshot(snapshot, true);
+        var restored = new TransactionEngine(options(retention), snapshot);
+
+        assertSameScores(original, restored, random, 8_000);
+        assertEquals(original.getTransactionHistory(), restored.getTransactionHistory());
+    }
+
+    @Test
+    public void testRestore_SpansManyChunks() throws IOException {
+        var options = new EngineOptions();
+        options.setAccountStatisticsEnabled(true);
+        var random = new Random(9);
+        var original = new TransactionEngine(options);
+        for (var i = 0; i < 300_000; i++) {
+            original.addAndScore(i, random.nextInt(50_000), random.nextInt(2_000), random.nextBoolean());
+        }
+        var snapshot = directory.resolve("engine.snap");
+
+        original.writeSnapshot(snapshot, true);
+        var restored = new TransactionEngine(options, snapshot);
+
+        assertTrue(Files.size(snapshot) > 3L * EngineSnapshot.CHUNK);
+        assertEquals(original.getTransactionHistory(), restored.getTransactionHistory());
+        for (var account = 0; account < 50_000; account += 97) {
+            assertEquals(original.getAccountStatistics(account), restored.getAccountStatistics(account));
+        }
+        assertSameScores(original, restored, random, 2_000);
+
+        try (var file = new RandomAccessFile(snapshot.toFile(), "rw")) {
+            file.setLength(file.length() - 1);
+        }
+        assertThrows(IOException.class, () -> new TransactionEngine(options, snapshot));
+    }
+
+    @Test
+    public void testRestore_KeepsReleasedSlotsFree() throws IOException {
+        var options = options(RetentionPolicy.maxTransactions(500));
+        options.setQuantileSketchesEnabled(true);
+        var random = new Random(11);
+        var original = new TransactionEngine(options);
+        for (var i = 0; i < 20_000; i++) {
+            // every account ages out a few hundred transactions after it appeared
+            original.addAndScore(i, i / 3, random.nextInt(2_000), random.nextBoolean());
+        }
+        var snapshot = directory.resolve("engine.snap");
+
+        original.writeSnapshot(snapshot, true);
+        var restored = new TransactionEngine(options, snapshot);
+
+        assertEquals(original.accountAggregates.size(), restored.accountAggregates.size());
+        assertEquals(original.accountAggregates.freeCount, restored.accountAggregates.freeCount);
+        for (var i = 20_000; i < 30_000; i++) {
+            var amount = random.nextInt(2_000);
+            var isDebit = random.nextBoolean();
+            assertEquals(original.addAndScore(i, i / 3, amount, isDebit), restored.addAndScore(i, i / 3, amount, isDebit));
+        }
+        assertEquals(original.getTransactionHistory(), restored.getTransactionHistory());
+        assertEquals(original.accountAggregates.size, restored.accountAggregates.size);
+    }
+
+    @Test
+    public void testRestore_CarriesAccountStatistics() throws IOException {
+        var options = new EngineOptions();
+        options.setAccountStatisticsEnabled(true);
+        var random = new Random(6);
+        var original = new TransactionEngine(options);
+        for (var i = 0; i < 5_000; i++) {
+            original.addTransactionAndDetectFraud(next(random));
+        }
+        var snapshot = directory.resolve("engine.snap");
+
+        original.writeSnapshot(snapshot, false);
+        var restored = new TransactionEngine(options, snapshot);
+
+        for (var account = 0; account < 300; account++) {
+            assertEquals(original.getAccountStatistics(account), restored.getAccountStatistics(account));
+        }
+        var withoutStatistics = directory.resolve("plain.snap");
+        new TransactionEngine().writeSnapshot(withoutStatistics, false);
+        assertThrows(IOException.class, () -> new TransactionEngine(options, withoutStatistics));
+    }
+
+    @Test
+    public void testRestore_StatisticsWithDuplicateOnlyAccounts() throws IOException {
+        var options = new EngineOptions();
+        options.setAccountStatisticsEnabled(true);
+        var engine = new TransactionEngine(options);
+        var count = AccountStatistics.DEFAULT_CAPACITY;
+        for (var account = 0; account < count; account++) {
+            engine.addTransactionAndDetectFraud(new Transaction(account, account, 100, true));
+        }
+        // the batch gives account 999 a slot past the statistics columns, but only a duplicate
+        engine.addTransactionsAndDetectFraud(new int[]{0}, new int[]{999}, new int[]{100}, new boolean[]{true});
+        var snapshot = directory.resolve("engine.snap");
+
+        engine.writeSnapshot(snapshot, false);
+        var restored = new TransactionEngine(options, snapshot);
+
+        for (var account = 0; account < count; account++) {
+            assertEquals(engine.getAccountStatistics(account), restored.getAccountStatistics(account));
+        }
+        assertEquals(AccountStatistics.Stats.EMPTY, restored.getAccountStatistics(999));
+    }
+
+    @Test
+    public void testWrite_BoundedEngineRequiresHistory() {
+        var engine = new TransactionEngine(options(RetentionPolicy.maxTransactions(10)));
+
+        assertThrows(IllegalStateException.class, () -> engine.writeSnapshot(directory.resolve("engine.snap"), false));
+    }
+
+    @Test
+    public void testRestore_ReplaysOnlyTheLogTail() throws IOException {
+        var random = new Random(4);
+        var reference = new TransactionEngine();
+        var snapshot = directory.resolve("engine.snap");
+        var logDirectory = directory.resolve("log");
+        Files.createDirectories(logDirectory);
+
+        try (var engine = new TransactionEngine(new TransactionLog(logDirectory, 1024, FsyncPolicy.NEVER))) {
+            for (var i = 0; i < 3_000; i++) {
+                var txn = next(random);
+                assertEquals(reference.addTransactionAndDetectFraud(txn), engine.addTransactionAndDetectFraud(txn));
+            }
+            engine.writeSnapshot(snapshot, true);
+            for (var i = 0; i < 2_000; i++) {
+                var txn = next(random);
+                assertEquals(reference.addTransactionAndDetectFraud(txn), engine.addTransactionAndDetectFraud(txn));
+            }
+        }
+
+        try (var restored = new TransactionEngine(new EngineOptions(), snapshot,
+                new TransactionLog(logDirectory, 1024, FsyncPolicy.NEVER))) {
+            assertEquals(reference.getTransactionHistory(), restored.getTransactionHistory());
+            assertSameScores(reference, restored, random, 3_000);
+        }
+    }
+
+    @Test
+    public void testWrite_ConsistentWhileAnotherThreadIngests() throws Exception {
+        var options = new EngineOptions();
+        options.setConcurrentReadsEnabled(true);
+        var logDirectory = directory.resolve("log");
+        Files.createDirectories(logDirectory);
+        var snapshot = directory.resolve("engine.snap");
+
+        try (var engine = new TransactionEngine(options, new TransactionLog(logDirectory, 1 << 16, FsyncPolicy.NEVER))) {
+            var writer = Thread.ofPlatform().start(() -> {
+                var random = new Random(8);
+                for (var i = 0; i < 200_000; i++) {
+                    engine.addAndScore(i, random.nextInt(300), random.nextInt(2_000), random.nextBoolean());
+                }
+            });
+            for (var round = 0; round < 10; round++) {
+                engine.writeSnapshot(snapshot, true);
+
+                var restored = new TransactionEngine();
+                var logSequence = EngineSnapshot.restore(restored, snapshot).records();
+                var history = restored.transactionHistory;
+                var counted = 0L;
+                for (var slot = 0; slot < restored.accountAggregates.size; slot++) {
+                    counted += restored.accountAggregates.counts[slot];
+                }
+                assertEquals(history.nextSequence(), logSequence);
+                assertEquals(history.size(), restored.transactionIds.size());
+                assertEquals(history.size(), counted);
+            }
+            writer.join();
+        }
+    }
+
+    @Test
+    public void testRestore_RejectsCorruptSnapshot() throws IOException {
+        var engine = new TransactionEngine();
+        engine.addTransactionAndDetectFraud(new Transaction(1, 1, 100, false));
+        var snapshot = directory.resolve("engine.snap");
+        engine.writeSnapshot(snapshot, true);
+
+        try (var file = new RandomAccessFile(snapshot.toFile(), "rw")) {
+            file.seek(30);
+            file.write(file.read() ^ 0xFF);
+        }
+
+        assertThrows(IOException.class, () -> new TransactionEngine(new EngineOptions(), snapshot));
+    }
+}
@@ -0,0 +1,122 @@
+package domain;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FraudRulePipelineTest {
+    private TransactionEngine engine;
+
+    @BeforeEach
+    public void setUp() {
+        engine = new TransactionEngine();
+    }
+
+    private static class FixedRule implements FraudRule {
+        final int score;
+        final double cost;
+        int calls;
+
+        FixedRule(int score, double cost) {
+            this.score = score;
+            this.cost = cost;
+        }
+
+        @Override
+        public int score(TransactionEngine engine, int accountSlot, int amount, boolean isDebit) {
+            calls++;
+            return score;
+        }
+
+        @Override
+        public double cost() {
+            return cost;
+        }
+    }
+
+    @Test
+    public void testConstructor_RejectsEmptyRuleList() {
+        assertThrows(IllegalArgumentException.class, () -> new FraudRulePipeline(List.of()));
+    }
+
+    @Test
+    public void testScore_HigherPriorityRuleWinsEvenWhenEvaluatedLater() {
+        var expensive = new FixedRule(7, 100);
+        var cheap = new FixedRule(3, 1);
+        var pipeline = new FraudRulePipeline(List.of(expensive, cheap));
+
+        assertArrayEquals(new int[]{1, 0}, pipeline.getEvaluationOrder());
+        assertEquals(7, pipeline.score(engine, 0, 10, true));
+        assertEquals(0, pipeline.getLastFired());
+        assertEquals(1, expensive.calls);
+        assertEquals(1, cheap.calls);
+    }
+
+    @Test
+    public void testScore_SkipsLowerPriorityRulesOnceARuleFired() {
+        var first = new FixedRule(5, 1);
+        var second = new FixedRule(9, 50);
+        var pipeline = new FraudRulePipeline(List.of(first, second));
+
+        assertEquals(5, pipeline.score(engine, 0, 10, true));
+        assertEquals(0, second.calls);
+        assertEquals(0, pipeline.getEvaluations(1));
+        assertEquals(1, pipeline.getHits(0));
+    }
+
+    @Test
+    public void testScore_ReturnsZeroWhenNoRuleFires() {
+        var pipeline = new FraudRulePipeline(List.of(new FixedRule(0, 1), new FixedRule(0, 1)));
+
+        assertEquals(0, pipeline.score(engine, 0, 10, true));
+        assertEquals(-1, pipeline.getLastFired());
+    }
+
+    @Test
+    public void testReorder_PrefersRulesThatHitMoreOften() {
+        var rare = new FixedRule(0, 1);
+        var frequent = new FixedRule(4, 1);
+        var pipeline = new FraudRulePipeline(List.of(rare, frequent));
+
+        for (var i = 0; i < FraudRulePipeline.REORDER_INTERVAL; i++) {
+            pipeline.score(engine, 0, 10, true);
+        }
+
+        assertArrayEquals(new int[]{1, 0}, pipeline.getEvaluationOrder());
+    }
+
+    @Test
+    public void testDefaultRules_KeepExcessiveDebitThenPatternScoring() {
+        var reference = new TransactionEngine();
+        var random = new Random(11);
+        for (var i = 0; i < 20_000; i++) {
+            var amount = random.nextInt(4) == 0 ? 1_000 + random.nextInt(3) * 100 : random.nextInt(2_000);
+            var txn = new Transaction(random.nextInt(15_000), random.nextInt(40), amount, random.nextBoolean());
+
+            var expected = 0;
+            if (!reference.transactionIds.contains(txn.transactionId)) {
+                expected = reference.detectFraudulentTransaction(txn);
+                if (expected == 0) {
+                    expected = reference.getTransactionPatternAboveThreshold(reference.THRESHOLD);
+                }
+                reference.loadTransactionHistory(List.of(txn));
+            }
+
+            assertEquals(expected, engine.addTransactionAndDetectFraud(txn));
+        }
+    }
+
+    @Test
+    public void testEngineOptions_CustomRulesReplaceDefaults() {
+        var options = new EngineOptions();
+        options.setFraudRules(List.of(new FixedRule(42, 1)));
+        var custom = new TransactionEngine(options);
+
+        assertEquals(42, custom.addTransactionAndDetectFraud(new Transaction(1, 1, 100, false)));
+        assertEquals(1, custom.getRulePipeline().size());
+    }
+}
@@ -0,0 +1,193 @@
+package domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IngestionQueueTest {
+    private static IngestionQueue.ScoreCallback blockUntil(CountDownLatch started, CountDownLatch release) {
+        return (id, account, amount, debit, score) -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+
+    // Parks the consumer inside the first callback and fills the ring behind it. Slots are
+    // freed per batch, so the transaction being scored still holds its slot.
+    private static void fill(IngestionQueue queue, CountDownLatch started) throws InterruptedException {
+        queue.offer(0, 1, 100, true);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        for (var i = 1; i < queue.getCapacity(); i++) {
+            assertTrue(queue.offer(i, 1, 100, true));
+        }
+        assertEquals(queue.getCapacity(), queue.getQueueDepth());
+    }
+
+    @Test
+    public void testOffer_ScoresLikeSequentialEngineInOfferOrder() throws InterruptedException {
+        var reference = new TransactionEngine();
+        var random = new Random(25);
+        var expected = new int[5_000];
+        var actual = new int[expected.length];
+        var received = new AtomicInteger();
+        var queue = new IngestionQueue(new TransactionEngine(), 64, IngestionQueue.OverflowPolicy.BLOCK, 16,
+                (id, account, amount, debit, score) -> actual[received.getAndIncrement()] = score);
+
+        for (var i = 0; i < expected.length; i++) {
+            var txn = new Transaction(random.nextInt(4_000), random.nextInt(30), random.nextInt(3_000), random.nextBoolean());
+            expected[i] = reference.addTransactionAndDetectFraud(txn);
+            assertTrue(queue.offer(txn));
+        }
+        queue.close();
+
+        assertArrayEquals(expected, actual);
+        var stats = queue.getStats();
+        assertEquals(expected.length, stats.consumed());
+        assertTrue(stats.batches() <= stats.consumed());
+        assertEquals(0, stats.depth());
+    }
+
+    @Test
+    public void testOffer_ConcurrentProducersDeliverEveryTransactionOnce() throws Exception {
+        var producers = 8;
+        var perProducer = 2_000;
+        var seen = new boolean[producers * perProducer];
+        var engine = new TransactionEngine();
+        var queue = new IngestionQueue(engine, 128, IngestionQueue.OverflowPolicy.BLOCK,
+                (id, account, amount, debit, score) -> {
+                    assertFalse(seen[id]);
+                    seen[id] = true;
+                });
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var futures = new ArrayList<Future<?>>();
+            for (var p = 0; p < producers; p++) {
+                var base = p * perProducer;
+                futures.add(executor.submit(() -> {
+                    for (var i = 0; i < perProducer; i++) {
+                        queue.offer(base + i, base, 10 + i % 50, i % 2 == 0);
+                    }
+                }));
+            }
+            for (var future : futures) {
+                future.get();
+            }
+        }
+        queue.close();
+
+        for (var id = 0; id < seen.length; id++) {
+            assertTrue(seen[id], "missing " + id);
+        }
+        assertEquals(seen.length, engine.getHistorySize());
+        assertEquals(seen.length, queue.getStats().consumed());
+        assertEquals(0, queue.getStats().rejected() + queue.getStats().dropped());
+    }
+
+    @Test
+    public void testOffer_FailFastRejectsWhenFull() throws InterruptedException {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var queue = new IngestionQueue(new TransactionEngine(), 8, IngestionQueue.OverflowPolicy.FAIL_FAST,
+                blockUntil(started, release));
+        fill(queue, started);
+
+        assertThrows(RejectedExecutionException.class, () -> queue.offer(100, 1, 100, true));
+        assertThrows(RejectedExecutionException.class, () -> queue.offer(101, 1, 100, true));
+        assertEquals(2, queue.getStats().rejected());
+
+        release.countDown();
+        queue.close();
+        assertEquals(queue.getCapacity(), queue.getStats().consumed());
+    }
+
+    @Test
+    public void testOffer_DropDiscardsAndCountsWhenFull() throws InterruptedException {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var engine = new TransactionEngine();
+        var queue = new IngestionQueue(engine, 8, IngestionQueue.OverflowPolicy.DROP, blockUntil(started, release));
+        fill(queue, started);
+
+        assertFalse(queue.offer(100, 1, 100, true));
+        assertEquals(1, queue.getStats().dropped());
+
+        release.countDown();
+        queue.close();
+        assertEquals(queue.getCapacity(), engine.getHistorySize());
+    }
+
+    @Test
+    public void testOffer_BlockWaitsForRoomAndRecordsWait() throws Exception {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var queue = new IngestionQueue(new TransactionEngine(), 4, IngestionQueue.OverflowPolicy.BLOCK,
+                blockUntil(started, release));
+        fill(queue, started);
+
+        var blocked = Thread.ofVirtual().start(() -> queue.offer(100, 1, 100, true));
+        assertFalse(blocked.join(Duration.ofMillis(50)));
+        release.countDown();
+        blocked.join();
+        queue.close();
+
+        var stats = queue.getStats();
+        assertEquals(1, stats.blockedOffers());
+        assertTrue(stats.blockedWait().max() > 0);
+        assertEquals(queue.getCapacity() + 1, stats.consumed());
+    }
+
+    @Test
+    public void testClose_DrainsQueuedAndRejectsNewOffers() throws InterruptedException {
+        var scored = new AtomicInteger();
+        var queue = new IngestionQueue(new TransactionEngine(), 1024, IngestionQueue.OverflowPolicy.BLOCK,
+                (id, account, amount, debit, score) -> scored.getAndIncrement());
+        for (var i = 0; i < 500; i++) {
+            queue.offer(i, 1, 100, true);
+        }
+
+        queue.close();
+
+        assertEquals(500, scored.get());
+        assertThrows(RejectedExecutionException.class, () -> queue.offer(1_000, 1, 100, true));
+    }
+
+    @Test
+    public void testConsumerFailure_RejectsLaterOffers() throws InterruptedException {
+        var queue = new IngestionQueue(new TransactionEngine(), 16, IngestionQueue.OverflowPolicy.BLOCK,
+                (id, account, amount, debit, score) -> {
+                    throw new IllegalStateException("sink down");
+                });
+        queue.consumer.setUncaughtExceptionHandler((thread, error) -> {
+        });
+
+        queue.offer(1, 1, 100, true);
+        queue.consumer.join();
+
+        var error = assertThrows(RejectedExecutionException.class, () -> queue.offer(2, 1, 100, true));
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+    }
+
+    @Test
+    public void testCapacity_RoundedUpToPowerOfTwo() throws InterruptedException {
+        var queue = new IngestionQueue(new TransactionEngine(), 100, IngestionQueue.OverflowPolicy.DROP, null);
+        assertEquals(128, queue.getCapacity());
+        queue.close();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new IngestionQueue(new TransactionEngine(), 0, IngestionQueue.OverflowPolicy.DROP, null));
+    }
+}
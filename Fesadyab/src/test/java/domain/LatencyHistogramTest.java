@@ -0,0 +1,68 @@
+package domain;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+    LatencyHistogram histogram;
+
+    @BeforeEach
+    public void setUp() {
+        histogram = new LatencyHistogram();
+    }
+
+    @Test
+    public void testGetValueAtPercentile_Empty() {
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        assertEquals(0, histogram.getTotalCount());
+    }
+
+    @Test
+    public void testGetValueAtPercentile_SmallValuesAreExact() {
+        for (var value = 1; value <= 50; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(25, histogram.getValueAtPercentile(50));
+        assertEquals(50, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testGetValueAtPercentile_LargeValuesWithinRelativeError() {
+        for (var value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1_000L);
+        }
+
+        assertEquals(50_000_000, histogram.getValueAtPercentile(50), 50_000_000 * 0.04);
+        assertEquals(99_000_000, histogram.getValueAtPercentile(99), 99_000_000 * 0.04);
+        assertEquals(100_000_000, histogram.getMaxValue());
+    }
+
+    @Test
+    public void testIndexOf_IsMonotonic() {
+        var previous = -1;
+        for (var value = 0L; value < 1L << 40; value = value * 3 / 2 + 1) {
+            var index = LatencyHistogram.indexOf(value);
+            assertTrue(index >= previous);
+            assertTrue(LatencyHistogram.highestEquivalentValue(index) >= value);
+            previous = index;
+        }
+        assertTrue(LatencyHistogram.indexOf(Long.MAX_VALUE) < LatencyHistogram.BUCKETS);
+    }
+
+    @Test
+    public void testAddAndReset() {
+        var other = new LatencyHistogram();
+        other.record(10);
+        histogram.record(20);
+
+        histogram.add(other);
+        assertEquals(2, histogram.getTotalCount());
+        assertEquals(20, histogram.getMaxValue());
+
+        histogram.reset();
+        assertEquals(0, histogram.getTotalCount());
+    }
+}
@@ -0,0 +1,98 @@
+package domain;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PatternDetectorTest {
+    PatternDetector detector;
+
+    @BeforeEach
+    public void setUp() {
+        detector = new PatternDetector(1000);
+    }
+
+    @Test
+    public void testScore_Empty() {
+        assertEquals(0, detector.score());
+    }
+
+    @Test
+    public void testScore_FirstTransactionSeedsPreviousEvenBelowThreshold() {
+        detector.accept(500);
+        detector.accept(1500);
+
+        assertEquals(1000, detector.score());
+    }
+
+    @Test
+    public void testScore_MatchingDiffIsMeasuredFromFixedPrevious() {
+        detector.accept(1100);
+        detector.accept(1200);
+        detector.accept(1300);
+
+        assertEquals(100, detector.score());
+
+        detector.accept(1400);
+
+        assertEquals(0, detector.score());
+    }
+
+    @Test
+    public void testScore_ZeroDiffIsRecomputed() {
+        detector.accept(1500);
+        detector.accept(1500);
+        detector.accept(1800);
+
+        assertEquals(300, detector.score());
+    }
+
+    @Test
+    public void testScore_BrokenPatternStaysZero() {
+        detector.accept(1000);
+        detector.accept(2000);
+        detector.accept(2500);
+        detector.accept(2000);
+
+        assertEquals(0, detector.score());
+    }
+
+    @Test
+    public void testReset_StartsOver() {
+        detector.accept(9999);
+        detector.reset();
+        detector.accept(400);
+        detector.accept(1400);
+
+        assertEquals(1000, detector.score());
+    }
+
+    @Test
+    public void testScore_MatchesHistoryRescan() {
+        var random = new Random(11);
+        for (var run = 0; run < 200; run++) {
+            var engine = new TransactionEngine();
+            var streaming = new PatternDetector(1200);
+            var base = random.nextInt(2000);
+            var step = random.nextInt(3) * 100;
+
+            for (var i = 0; i < 20; i++) {
+                var amount = random.nextInt(4) == 0 ? random.nextInt(3000) : base + step * i;
+                assertEquals(engine.getTransactionPatternAboveThreshold(1200), streaming.score());
+                engine.addTransactionAndDetectFraud(transaction(i + 1, amount));
+                streaming.accept(amount);
+            }
+            assertEquals(engine.getTransactionPatternAboveThreshold(1200), streaming.score());
+        }
+    }
+
+    private static Transaction transaction(int transactionId, int amount) {
+        Transaction txn = new Transaction();
+        txn.setTransactionId(transactionId);
+        txn.setAmount(amount);
+        return txn;
+    }
+}
@@ -0,0 +1,66 @@
+package domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedTransactionEngineTest {
+
+    @Test
+    public void testConstructor_RejectsNonPowerOfTwoShards() {
+        assertThrows(IllegalArgumentException.class, () -> new ShardedTransactionEngine(3));
+    }
+
+    @Test
+    public void testAddTransactionAndDetectFraud_SingleTransactions() {
+        var engine = new ShardedTransactionEngine(4);
+
+        assertEquals(500, engine.addTransactionAndDetectFraud(new Transaction(1, 1, 500, true)));
+        assertEquals(500, engine.addTransactionAndDetectFraud(new Transaction(2, 1, 1500, true)));
+        assertEquals(0, engine.addTransactionAndDetectFraud(new Transaction(1, 2, 9000, true)));
+        assertEquals(1000, engine.getAverageTransactionAmountByAccount(1));
+        assertEquals(2, engine.getHistorySize());
+    }
+
+    @Test
+    public void testAddTransactionsAndDetectFraud_IdenticalToSingleThreadedEngine() {
+        var transactions = stream(60_000, new Random(31));
+
+        var reference = new TransactionEngine();
+        var expected = new int[transactions.size()];
+        for (var i = 0; i < expected.length; i++) {
+            expected[i] = reference.addTransactionAndDetectFraud(transactions.get(i));
+        }
+
+        for (var shardCount = 1; shardCount <= 8; shardCount *= 2) {
+            var engine = new ShardedTransactionEngine(shardCount);
+            var actual = new int[0];
+            for (var from = 0; from < transactions.size(); from += 9_999) {
+                var scores = engine.addTransactionsAndDetectFraud(
+                        transactions.subList(from, Math.min(from + 9_999, transactions.size())));
+                var merged = new int[actual.length + scores.length];
+                System.arraycopy(actual, 0, merged, 0, actual.length);
+                System.arraycopy(scores, 0, merged, actual.length, scores.length);
+                actual = merged;
+            }
+
+            assertArrayEquals(expected, actual, "shards=" + shardCount);
+            assertEquals(reference.transactionHistory.size(), engine.getHistorySize());
+            assertEquals(reference.getTransactionPatternAboveThreshold(reference.THRESHOLD),
+                    engine.getTransactionPatternAboveThreshold());
+        }
+    }
+
+    private static List<Transaction> stream(int size, Random random) {
+        var transactions = new ArrayList<Transaction>(size);
+        for (var i = 0; i < size; i++) {
+            var amount = random.nextInt(8) == 0 ? 1000 + random.nextInt(3) * 250 : random.nextInt(1500);
+            transactions.add(new Transaction(random.nextInt(size), random.nextInt(2_000), amount, random.nextBoolean()));
+        }
+        return transactions;
+    }
+}
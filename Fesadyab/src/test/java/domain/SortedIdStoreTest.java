@@ -0,0 +1,65 @@
+package domain;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SortedIdStoreTest {
+    private SortedIdStore store;
+
+    @BeforeEach
+    public void setUp() {
+        store = new SortedIdStore();
+    }
+
+    @Test
+    public void testAddContainsRemove_AcrossMerge() {
+        assertTrue(store.add(5));
+        assertFalse(store.add(5));
+        store.merge();
+
+        assertTrue(store.contains(5));
+        assertFalse(store.add(5));
+        assertTrue(store.remove(5));
+        assertFalse(store.contains(5));
+        assertFalse(store.remove(5));
+        assertTrue(store.add(5));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void testOperations_MatchHashSetModel() {
+        var model = new HashSet<Integer>();
+        var random = new Random(9);
+        for (var i = 0; i < 200_000; i++) {
+            var id = random.nextInt(50_000) - 25_000;
+            if (random.nextInt(4) == 0) {
+                assertEquals(model.remove(id), store.remove(id));
+            } else {
+                assertEquals(model.add(id), store.add(id));
+            }
+        }
+
+        assertEquals(model.size(), store.size());
+        for (var id = -25_000; id < 25_000; id++) {
+            assertEquals(model.contains(id), store.contains(id));
+        }
+        var visited = new HashSet<Integer>();
+        store.forEach(visited::add);
+        assertEquals(model, visited);
+    }
+
+    @Test
+    public void testMemoryBytes_AboutFourBytesPerIdAfterMerge() {
+        for (var i = 1; i <= 1_000_000; i++) {
+            store.add(i * 3);
+        }
+        store.merge();
+
+        assertTrue(store.memoryBytes() < 1_000_000 * 4L + (1 << 21), "was " + store.memoryBytes());
+    }
+}
@@ -0,0 +1,138 @@
+package domain;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TieredTransactionIdIndexTest {
+    private TieredTransactionIdIndex index;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    public void setUp() {
+        index = new TieredTransactionIdIndex(100_000, 0.01);
+    }
+
+    @Test
+    public void testContains_ExactDespiteFilterFalsePositives() {
+        for (var i = 0; i < 100_000; i++) {
+            assertTrue(index.add(i));
+        }
+
+        for (var i = 0; i < 100_000; i++) {
+            assertTrue(index.contains(i));
+            assertFalse(index.contains(i + 1_000_000));
+        }
+        assertTrue(index.getFalsePositives() > 0);
+        assertTrue(index.observedFalsePositiveRate() < 0.02, "observed " + index.observedFalsePositiveRate());
+    }
+
+    @Test
+    public void testAdd_GrowsFilterPastExpectedIds() {
+        for (var i = 0; i < 300_000; i++) {
+            index.add(i);
+        }
+
+        assertTrue(index.getFilter().expectedInsertions() >= 300_000);
+        for (var i = 0; i < 1_000; i++) {
+            assertTrue(index.contains(i * 300));
+        }
+    }
+
+    @Test
+    public void testAdd_DoesNotCountAsLookup() {
+        for (var i = 0; i < 1_000; i++) {
+            assertTrue(index.add(i));
+        }
+        assertEquals(0, index.getFilterRejections() + index.getFalsePositives());
+
+        for (var i = 0; i < 1_000; i++) {
+            assertFalse(index.contains(i + 1_000_000));
+        }
+        assertEquals(1_000, index.getFilterRejections() + index.getFalsePositives());
+    }
+
+    @Test
+    public void testAdd_FreshIdsMostlySkipTheStore() {
+        var probes = new int[1];
+        var store = new SortedIdStore() {
+            @Override
+            public boolean contains(int transactionId) {
+                probes[0]++;
+                return super.contains(transactionId);
+            }
+
+            @Override
+            public boolean add(int transactionId) {
+                probes[0]++;
+                return super.add(transactionId);
+            }
+        };
+        var counted = new TieredTransactionIdIndex(100_000, 0.01, store);
+
+        for (var i = 0; i < 100_000; i++) {
+            assertTrue(counted.add(i));
+        }
+
+        // only filter false positives reach the store
+        assertTrue(probes[0] < 2_000, "store probes " + probes[0]);
+        assertEquals(100_000, counted.size());
+        assertFalse(counted.add(5));
+    }
+
+    @Test
+    public void testRemove_AllowsReinsertion() {
+        index.add(7);
+
+        assertTrue(index.remove(7));
+        assertFalse(index.contains(7));
+        assertTrue(index.add(7));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void testMemoryBytes_SmallerThanExactSet() {
+        var exact = new TransactionIdSet();
+        for (var i = 0; i < 1_000_000; i++) {
+            var id = i * 13 + 1;
+            index.add(id);
+            exact.add(id);
+        }
+
+        assertTrue(index.memoryBytes() < exact.memoryBytes());
+    }
+
+    @Test
+    public void testEngine_TieredModeScoresLikeExactMode() throws IOException {
+        var options = new EngineOptions();
+        options.setDedupMode(EngineOptions.DedupMode.TIERED);
+        options.setExpectedTransactionIds(10_000);
+        options.setRetentionPolicy(RetentionPolicy.maxTransactions(5_000));
+        var tiered = new TransactionEngine(options);
+        var exactOptions = new EngineOptions();
+        exactOptions.setRetentionPolicy(RetentionPolicy.maxTransactions(5_000));
+        var exact = new TransactionEngine(exactOptions);
+        var random = new Random(12);
+        for (var i = 0; i < 30_000; i++) {
+            var txn = new Transaction(random.nextInt(40_000), random.nextInt(200), random.nextInt(3_000), random.nextBoolean());
+            assertEquals(exact.addTransactionAndDetectFraud(txn), tiered.addTransactionAndDetectFraud(txn));
+        }
+
+        var snapshot = directory.resolve("engine.snap");
+        tiered.writeSnapshot(snapshot, true);
+        var restored = new TransactionEngine(options, snapshot);
+        assertEquals(tiered.getTransactionIdIndex().size(), restored.getTransactionIdIndex().size());
+        for (var i = 0; i < 5_000; i++) {
+            var txn = new Transaction(random.nextInt(40_000), random.nextInt(200), random.nextInt(3_000), random.nextBoolean());
+            assertEquals(exact.addTransactionAndDetectFraud(txn), restored.addTransactionAndDetectFraud(txn));
+        }
+    }
+}
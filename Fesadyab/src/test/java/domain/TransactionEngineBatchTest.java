@@ -0,0 +1,72 @@
+package domain;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionEngineBatchTest {
+    TransactionEngine engine;
+
+    @BeforeEach
+    public void setUp() {
+        engine = new TransactionEngine();
+    }
+
+    @Test
+    public void testAddTransactionsAndDetectFraud_EmptyBatch() {
+        assertArrayEquals(new int[0], engine.addTransactionsAndDetectFraud(List.of()));
+    }
+
+    @Test
+    public void testAddTransactionsAndDetectFraud_DuplicatesInsideBatch() {
+        var scores = engine.addTransactionsAndDetectFraud(
+                new int[]{1, 2, 1},
+                new int[]{1, 1, 1},
+                new int[]{500, 1500, 9000},
+                new boolean[]{true, true, true});
+
+        assertArrayEquals(new int[]{500, 500, 0}, scores);
+        assertEquals(2, engine.transactionHistory.size());
+        assertEquals(1000, engine.getAverageTransactionAmountByAccount(1));
+    }
+
+    @Test
+    public void testAddTransactionsAndDetectFraud_MismatchedColumns() {
+        assertThrows(IllegalArgumentException.class, () -> engine.addTransactionsAndDetectFraud(
+                new int[]{1, 2}, new int[]{1}, new int[]{1, 2}, new boolean[]{true, false}));
+    }
+
+    @Test
+    public void testAddTransactionsAndDetectFraud_MatchesSequentialScoring() {
+        var random = new Random(3);
+        var transactions = new ArrayList<Transaction>();
+        for (var i = 0; i < 50_000; i++) {
+            transactions.add(new Transaction(random.nextInt(40_000), random.nextInt(300),
+                    random.nextInt(4000), random.nextBoolean()));
+        }
+
+        var sequential = new TransactionEngine();
+        var expected = new int[transactions.size()];
+        for (var i = 0; i < expected.length; i++) {
+            expected[i] = sequential.addTransactionAndDetectFraud(transactions.get(i));
+        }
+
+        var actual = new int[0];
+        for (var from = 0; from < transactions.size(); from += 7_000) {
+            var batch = transactions.subList(from, Math.min(from + 7_000, transactions.size()));
+            var scores = engine.addTransactionsAndDetectFraud(batch);
+            var merged = new int[actual.length + scores.length];
+            System.arraycopy(actual, 0, merged, 0, actual.length);
+            System.arraycopy(scores, 0, merged, actual.length, scores.length);
+            actual = merged;
+        }
+
+        assertArrayEquals(expected, actual);
+        assertEquals(sequential.transactionHistory.size(), engine.transactionHistory.size());
+    }
+}
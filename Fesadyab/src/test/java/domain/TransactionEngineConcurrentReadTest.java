@@ -0,0 +1,77 @@
+package domain;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionEngineConcurrentReadTest {
+    private TransactionEngine engine;
+
+    @BeforeEach
+    public void setUp() {
+        var options = new EngineOptions();
+        options.setConcurrentReadsEnabled(true);
+        engine = new TransactionEngine(options);
+    }
+
+    @Test
+    public void testQueries_SingleThreadedResultsUnchanged() {
+        engine.addAndScore(1, 1, 1100, false);
+        engine.addAndScore(2, 1, 1200, false);
+        engine.addAndScore(3, 2, 1300, false);
+
+        assertEquals(1150, engine.getAverageTransactionAmountByAccount(1));
+        assertEquals(3, engine.getHistorySize());
+        assertEquals(100, engine.getPatternDiff());
+    }
+
+    @Test
+    public void testQueries_NeverSeeTornStateDuringIngest() throws InterruptedException {
+        var done = new AtomicBoolean();
+        var failures = new ConcurrentLinkedQueue<String>();
+        var reads = new AtomicLong();
+        var readers = new ArrayList<Thread>();
+        for (var r = 0; r < 3; r++) {
+            readers.add(Thread.ofPlatform().start(() -> {
+                var lastSize = 0;
+                while (!done.get()) {
+                    // account 7 only ever receives 500s, so any other non-zero average is a torn sum/count
+                    var average = engine.getAverageTransactionAmountByAccount(7);
+                    if (average != 0 && average != 500) {
+                        failures.add("average " + average);
+                    }
+                    var size = engine.getHistorySize();
+                    if (size < lastSize) {
+                        failures.add("history shrank from " + lastSize + " to " + size);
+                    }
+                    lastSize = size;
+                    reads.incrementAndGet();
+                }
+            }));
+        }
+
+        // fresh accounts keep growing and rehashing the aggregates while readers probe them
+        for (var i = 1; i <= 300_000; i++) {
+            if (i % 3 == 0) {
+                engine.addAndScore(i, 7, 500, false);
+            } else {
+                engine.addAndScore(i, 1_000 + i, i % 2_000, i % 5 == 0);
+            }
+        }
+        done.set(true);
+        for (var reader : readers) {
+            reader.join();
+        }
+
+        assertTrue(failures.isEmpty(), () -> failures.peek());
+        assertTrue(reads.get() > 0);
+        assertEquals(300_000, engine.getHistorySize());
+        assertEquals(500, engine.getAverageTransactionAmountByAccount(7));
+    }
+}
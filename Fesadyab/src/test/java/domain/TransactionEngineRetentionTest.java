@@ -0,0 +1,186 @@
+package domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionEngineRetentionTest {
+
+    @Test
+    public void testRetentionPolicy_RejectsNegativeBounds() {
+        assertThrows(IllegalArgumentException.class, () -> new RetentionPolicy(-1, 0));
+        assertFalse(RetentionPolicy.UNBOUNDED.isBounded());
+        assertThrows(IllegalArgumentException.class, () -> new RetentionPolicy(0, 3));
+        assertTrue(RetentionPolicy.lastPerAccount(3, 100).isBounded());
+    }
+
+    @Test
+    public void testMaxTransactions_EvictsOldestFromHistoryAveragesAndDedup() {
+        var engine = engine(new RetentionPolicy(2, 0));
+
+        engine.addTransactionAndDetectFraud(new Transaction(1, 1, 100, false));
+        engine.addTransactionAndDetectFraud(new Transaction(2, 1, 200, false));
+        engine.addTransactionAndDetectFraud(new Transaction(3, 1, 300, false));
+
+        assertEquals(2, engine.transactionHistory.size());
+        assertEquals(2, engine.transactionHistory.transactionId(0));
+        assertEquals(250, engine.getAverageTransactionAmountByAccount(1));
+        assertFalse(engine.transactionIds.contains(1));
+        assertEquals(2, engine.transactionIds.size());
+    }
+
+    @Test
+    public void testLastPerAccount_KeepsOnlyRecentTransactionsInAverages() {
+        var engine = engine(RetentionPolicy.lastPerAccount(2, 100));
+
+        engine.addTransactionAndDetectFraud(new Transaction(1, 1, 900, false));
+        engine.addTransactionAndDetectFraud(new Transaction(2, 2, 50, false));
+        engine.addTransactionAndDetectFraud(new Transaction(3, 1, 100, false));
+        engine.addTransactionAndDetectFraud(new Transaction(4, 1, 300, false));
+
+        assertEquals(200, engine.getAverageTransactionAmountByAccount(1));
+        assertEquals(50, engine.getAverageTransactionAmountByAccount(2));
+        assertEquals(4, engine.transactionHistory.size());
+
+        // out of the window but still in the history, so still a duplicate
+        assertEquals(0, engine.addTransactionAndDetectFraud(new Transaction(1, 1, 5000, true)));
+        assertEquals(4, engine.transactionHistory.size());
+    }
+
+    @Test
+    public void testLastPerAccount_HistoryAndDedupStayBounded() {
+        var engine = engine(RetentionPolicy.lastPerAccount(2, 50));
+        var random = new Random(8);
+        for (var i = 0; i < 100_000; i++) {
+            engine.addAndScore(random.nextInt(1_000), random.nextInt(3), random.nextInt(1000), random.nextBoolean());
+        }
+
+        assertEquals(50, engine.transactionHistory.size());
+        assertEquals(50, engine.transactionIds.size());
+        var ids = new HashSet<Integer>();
+        for (var i = 0; i < engine.transactionHistory.size(); i++) {
+            assertTrue(ids.add(engine.transactionHistory.transactionId(i)));
+        }
+    }
+
+    @Test
+    public void testRetention_MatchesReferenceModel() {
+        var maxTransactions = 300;
+        var maxPerAccount = 5;
+        var engine = engine(new RetentionPolicy(maxTransactions, maxPerAccount));
+
+        var global = new ArrayDeque<Transaction>();
+        var perAccount = new HashMap<Integer, ArrayDeque<Transaction>>();
+        var random = new Random(9);
+
+        for (var i = 0; i < 20_000; i++) {
+            var txn = new Transaction(random.nextInt(2_000), random.nextInt(80), random.nextInt(1000), random.nextBoolean());
+            var live = global.stream()
+                    .filter(t -> perAccount.get(t.getAccountId()).stream().anyMatch(w -> w == t))
+                    .toList();
+
+            // dedup covers the whole retained history, not just the account windows
+            var duplicate = global.stream().anyMatch(t -> t.getTransactionId() == txn.getTransactionId());
+            var liveOfAccount = live.stream().filter(t -> t.getAccountId() == txn.getAccountId()).toList();
+            var expectedAverage = liveOfAccount.isEmpty() ? 0
+                    : (int) (liveOfAccount.stream().mapToLong(Transaction::getAmount).sum() / liveOfAccount.size());
+
+            assertEquals(expectedAverage, engine.getAverageTransactionAmountByAccount(txn.getAccountId()));
+            var score = engine.addTransactionAndDetectFraud(txn);
+            if (duplicate) {
+                assertEquals(0, score);
+                continue;
+            }
+
+            global.addLast(txn);
+            if (global.size() > maxTransactions) {
+                global.removeFirst();
+            }
+            var window = perAccount.computeIfAbsent(txn.getAccountId(), k -> new ArrayDeque<>());
+            window.addLast(txn);
+            if (window.size() > maxPerAccount) {
+                window.removeFirst();
+            }
+            assertEquals(global.size(), engine.transactionHistory.size());
+        }
+    }
+
+    @Test
+    public void testMaxTransactions_AccountChurnReusesSlots() {
+        var options = new EngineOptions();
+        options.setRetentionPolicy(RetentionPolicy.maxTransactions(200));
+        options.setAccountStatisticsEnabled(true);
+        options.setQuantileSketchesEnabled(true);
+        options.setAccountIndexEnabled(true);
+        var engine = new TransactionEngine(options);
+        var global = new ArrayDeque<Transaction>();
+        var random = new Random(10);
+
+        for (var round = 0; round < 5_000; round++) {
+            var batch = new ArrayList<Transaction>();
+            for (var i = 0; i < 16; i++) {
+                // accounts keep moving on, and some ids repeat the previous batch
+                batch.add(new Transaction(round * 16 + i - random.nextInt(2) * 16, round + random.nextInt(40),
+                        random.nextInt(1000), random.nextBoolean()));
+            }
+            engine.addTransactionsAndDetectFraud(batch);
+            for (var txn : batch) {
+                if (global.stream().noneMatch(t -> t.getTransactionId() == txn.getTransactionId())) {
+                    global.addLast(txn);
+                    if (global.size() > 200) {
+                        global.removeFirst();
+                    }
+                }
+            }
+        }
+
+        for (var account = 4_800; account < 5_040; account++) {
+            var id = account;
+            var live = global.stream().filter(t -> t.getAccountId() == id).toList();
+            var expected = live.isEmpty() ? 0 : (int) (live.stream().mapToLong(Transaction::getAmount).sum() / live.size());
+            assertEquals(expected, engine.getAverageTransactionAmountByAccount(account));
+            assertEquals(live.size(), engine.getLastTransactions(account, 200).size());
+            assertEquals(live.size(), engine.getAccountSketch(account).count(0));
+        }
+        // 80,000 accounts went through, but only the ones with retained transactions hold a slot
+        assertTrue(engine.accountAggregates.size <= 200 + 16);
+        assertTrue(engine.accountStatistics.counts.length < 400);
+        assertTrue(engine.quantileSketches.counts.length < 400);
+        assertTrue(engine.accountIndex.latest.length < 400);
+    }
+
+    @Test
+    public void testMaxTransactions_ReturningAccountStartsOver() {
+        var options = new EngineOptions();
+        options.setRetentionPolicy(RetentionPolicy.maxTransactions(2));
+        options.setAccountStatisticsEnabled(true);
+        var engine = new TransactionEngine(options);
+
+        engine.addAndScore(1, 7, 100, false);
+        engine.addAndScore(2, 8, 50, false);
+        engine.addAndScore(3, 8, 60, false);
+
+        assertEquals(AccountStatistics.Stats.EMPTY, engine.getAccountStatistics(7));
+        assertEquals(1, engine.accountAggregates.size());
+
+        // account 9 takes over the slot account 7 held, and account 7 comes back fresh
+        engine.addAndScore(4, 9, 10, false);
+        assertEquals(0, engine.accountAggregates.find(9));
+        engine.addAndScore(5, 7, 300, false);
+        assertEquals(new AccountStatistics.Stats(1, 10, 0, 10, 10, 10), engine.getAccountStatistics(9));
+        assertEquals(new AccountStatistics.Stats(1, 300, 0, 300, 300, 300), engine.getAccountStatistics(7));
+        assertEquals(2, engine.accountAggregates.size());
+    }
+
+    private static TransactionEngine engine(RetentionPolicy retentionPolicy) {
+        var options = new EngineOptions();
+        options.setRetentionPolicy(retentionPolicy);
+        return new TransactionEngine(options);
+    }
+}
@@ -2,6 +2,12 @@ package domain;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+
+import com.sun.management.ThreadMXBean;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class TransactionEngineTest {
@@ -52,6 +58,25 @@ public class TransactionEngineTest {
         assertEquals(0, avg);
     }
 
+    @Test
+    public void testGetAverageTransactionAmountByAccount_LargeAmounts() {
+        Transaction txn1 = new Transaction();
+        txn1.setTransactionId(1);
+        txn1.setAccountId(1);
+        txn1.setAmount(Integer.MAX_VALUE);
+
+        Transaction txn2 = new Transaction();
+        txn2.setTransactionId(2);
+        txn2.setAccountId(1);
+        txn2.setAmount(Integer.MAX_VALUE - 2);
+
+        engine.addTransactionAndDetectFraud(txn1);
+        engine.addTransactionAndDetectFraud(txn2);
+
+        int avg = engine.getAverageTransactionAmountByAccount(1);
+        assertEquals(Integer.MAX_VALUE - 1, avg);
+    }
+
     @Test
     public void testGetTransactionPatternAboveThreshold_NoTransactions() {
         int result = engine.getTransactionPatternAboveThreshold(1000);
@@ -227,4 +252,79 @@ public class TransactionEngineTest {
         assertEquals(0, pattern, "Pattern should be 0 with a single transaction");
     }
 
+    @Test
+    public void testLoadTransactionHistory_SkipsDuplicatesAndFeedsIndexes() {
+        Transaction txn1 = new Transaction();
+        txn1.setTransactionId(1);
+        txn1.setAccountId(1);
+        txn1.setAmount(1200);
+
+        Transaction txn2 = new Transaction();
+        txn2.setTransactionId(2);
+        txn2.setAccountId(1);
+        txn2.setAmount(1800);
+
+        engine.loadTransactionHistory(List.of(txn1, txn2, txn1));
+
+        assertEquals(2, engine.transactionHistory.size());
+        assertEquals(1500, engine.getAverageTransactionAmountByAccount(1));
+        assertEquals(600, engine.getTransactionPatternAboveThreshold(engine.THRESHOLD));
+        assertEquals(0, engine.addTransactionAndDetectFraud(txn2));
+    }
+
+    @Test
+    public void testRebuildIndexes_AfterDirectHistoryChange() {
+        Transaction txn1 = new Transaction();
+        txn1.setTransactionId(1);
+        txn1.setAccountId(1);
+        txn1.setAmount(500);
+
+        Transaction txn2 = new Transaction();
+        txn2.setTransactionId(2);
+        txn2.setAccountId(1);
+        txn2.setAmount(1500);
+
+        engine.addTransactionAndDetectFraud(txn1);
+        engine.transactionHistory.add(txn2);
+        engine.rebuildIndexes();
+
+        assertEquals(1000, engine.getAverageTransactionAmountByAccount(1));
+        assertEquals(1000, engine.getTransactionPatternAboveThreshold(engine.THRESHOLD));
+    }
+
+    @Test
+    public void testAddAndScore_MatchesTransactionPath() {
+        var reference = new TransactionEngine();
+
+        var first = engine.addAndScore(1, 1, 100, false);
+        var second = engine.addAndScore(2, 1, 500, true);
+        var duplicate = engine.addAndScore(2, 1, 500, true);
+
+        assertEquals(reference.addTransactionAndDetectFraud(new Transaction(1, 1, 100, false)), first);
+        assertEquals(reference.addTransactionAndDetectFraud(new Transaction(2, 1, 500, true)), second);
+        assertEquals(0, duplicate);
+        assertEquals(300, second);
+        assertEquals(reference.getTransactionHistory(), engine.getTransactionHistory());
+    }
+
+    @Test
+    public void testAddAndScore_DoesNotAllocateOnceWarm() {
+        var threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        var options = new EngineOptions();
+        options.setRetentionPolicy(RetentionPolicy.maxTransactions(10_000));
+        var bounded = new TransactionEngine(options);
+        var nextId = 0;
+        for (var i = 0; i < 50_000; i++, nextId++) {
+            bounded.addAndScore(nextId, nextId % 500, nextId % 3_000, nextId % 3 == 0);
+        }
+
+        var threadId = Thread.currentThread().threadId();
+        var before = threads.getThreadAllocatedBytes(threadId);
+        for (var i = 0; i < 100_000; i++, nextId++) {
+            bounded.addAndScore(nextId, nextId % 500, nextId % 3_000, nextId % 3 == 0);
+        }
+        var allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(allocated < 16 * 1024, "allocated " + allocated + " bytes for 100k transactions");
+    }
 }
@@ -0,0 +1,106 @@
+package domain;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionEngineWhatIfTest {
+    private TransactionEngine engine;
+
+    @BeforeEach
+    public void setUp() {
+        engine = new TransactionEngine();
+    }
+
+    @Test
+    public void testScore_LeavesEngineUnchanged() {
+        engine.addAndScore(1, 1, 100, false);
+
+        assertEquals(300, engine.score(new Transaction(2, 1, 500, true)));
+        assertEquals(0, engine.score(new Transaction(1, 1, 500, true)));
+
+        assertEquals(1, engine.getHistorySize());
+        assertEquals(100, engine.getAverageTransactionAmountByAccount(1));
+        assertEquals(1, engine.getRulePipeline().getEvaluations(0));
+        assertEquals(-1, engine.accountAggregates.find(2));
+        assertEquals(500, engine.score(new Transaction(3, 2, 500, true)));
+        assertEquals(-1, engine.accountAggregates.find(2));
+    }
+
+    @Test
+    public void testScoreThenCommit_MatchesAddAndScore() {
+        var reference = new TransactionEngine();
+        var random = new Random(31);
+        for (var i = 0; i < 10_000; i++) {
+            var txn = new Transaction(random.nextInt(8_000), random.nextInt(50), random.nextInt(3_000), random.nextBoolean());
+
+            var expected = reference.addTransactionAndDetectFraud(txn);
+            var score = engine.score(txn);
+            var committed = engine.commit(txn);
+
+            assertEquals(expected, score);
+            assertEquals(reference.getHistorySize(), engine.getHistorySize());
+            if (!committed) {
+                assertEquals(0, score);
+            }
+        }
+        assertEquals(reference.getTransactionHistory(), engine.getTransactionHistory());
+    }
+
+    @Test
+    public void testScore_OptionalRulesHandleUnknownAccounts() {
+        var options = new EngineOptions();
+        options.setAccountStatisticsEnabled(true);
+        options.setQuantileSketchesEnabled(true);
+        options.setFraudRules(List.of(new ExcessiveDebitRule(), new DeviationRule(), new PercentileDebitRule()));
+        var withRules = new TransactionEngine(options);
+
+        assertEquals(10, withRules.score(new Transaction(1, 42, 10, true)));
+        assertTrue(withRules.commit(1, 42, 10, true));
+        assertFalse(withRules.commit(1, 42, 10, true));
+        assertEquals(0, withRules.score(2, 42, 10, true));
+    }
+
+    @Test
+    public void testScore_ConcurrentReadersDuringIngest() throws InterruptedException {
+        var options = new EngineOptions();
+        options.setConcurrentReadsEnabled(true);
+        var concurrent = new TransactionEngine(options);
+        var done = new AtomicBoolean();
+        var failures = new ConcurrentLinkedQueue<Throwable>();
+        var readers = new ArrayList<Thread>();
+        for (var r = 0; r < 3; r++) {
+            readers.add(Thread.ofPlatform().start(() -> {
+                try {
+                    while (!done.get()) {
+                        // account 3 only ever sees 400s, so a 1000 debit scores 200 (1000 before its first)
+                        var score = concurrent.score(-1, 3, 1_000, true);
+                        if (score != 1_000 && score != 200) {
+                            failures.add(new AssertionError("score " + score));
+                        }
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }));
+        }
+
+        for (var i = 1; i <= 200_000; i++) {
+            concurrent.addAndScore(i, i % 4 == 0 ? 3 : 100 + i, i % 4 == 0 ? 400 : i % 900, false);
+        }
+        done.set(true);
+        for (var reader : readers) {
+            reader.join();
+        }
+
+        assertTrue(failures.isEmpty(), () -> failures.peek().toString());
+        assertEquals(200, concurrent.score(-1, 3, 1_000, true));
+    }
+}
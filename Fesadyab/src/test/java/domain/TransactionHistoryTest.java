@@ -0,0 +1,120 @@
+package domain;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionHistoryTest {
+    TransactionHistory history;
+
+    @BeforeEach
+    public void setUp() {
+        history = new TransactionHistory();
+    }
+
+    @Test
+    public void testAppend_ColumnsReadBack() {
+        history.append(1, 10, 100, true);
+        history.append(2, 20, -50, false);
+
+        assertEquals(2, history.size());
+        assertEquals(2, history.transactionId(1));
+        assertEquals(20, history.accountId(1));
+        assertEquals(-50, history.amount(1));
+        assertTrue(history.isDebit(0));
+        assertFalse(history.isDebit(1));
+    }
+
+    @Test
+    public void testGet_MaterializesTransaction() {
+        history.append(7, 3, 900, true);
+
+        Transaction txn = history.get(0);
+
+        assertEquals(7, txn.getTransactionId());
+        assertEquals(3, txn.getAccountId());
+        assertEquals(900, txn.getAmount());
+        assertTrue(txn.isDebit());
+    }
+
+    @Test
+    public void testLoad_ReusesTarget() {
+        history.append(1, 1, 1, true);
+        history.append(2, 2, 2, false);
+        Transaction target = new Transaction();
+
+        assertSame(target, history.load(1, target));
+        assertEquals(2, target.getTransactionId());
+        assertFalse(target.isDebit());
+        assertThrows(IndexOutOfBoundsException.class, () -> history.load(2, target));
+    }
+
+    @Test
+    public void testIteration_SeesTransactionsInOrder() {
+        var expected = new ArrayList<Transaction>();
+        for (var i = 0; i < 1_000; i++) {
+            var txn = new Transaction(i, i % 7, i * 3, i % 3 == 0);
+            expected.add(txn);
+            history.add(txn);
+        }
+
+        var index = 0;
+        for (Transaction txn : history) {
+            Transaction original = expected.get(index++);
+            assertEquals(original, txn);
+            assertEquals(original.getAccountId(), txn.getAccountId());
+            assertEquals(original.getAmount(), txn.getAmount());
+            assertEquals(original.isDebit(), txn.isDebit());
+        }
+        assertEquals(expected.size(), index);
+    }
+
+    @Test
+    public void testClear_ResetsDebitBits() {
+        history.append(1, 1, 1, true);
+        history.clear();
+        history.append(2, 2, 2, false);
+
+        assertEquals(1, history.size());
+        assertFalse(history.isDebit(0));
+    }
+
+    @Test
+    public void testMemoryBytes_UnderFourteenBytesPerTransaction() {
+        for (var i = 0; i < 100_000; i++) {
+            history.append(i, i, i, i % 2 == 0);
+        }
+        history.trimToSize();
+
+        assertTrue(history.memoryBytes() < 14L * history.size());
+    }
+
+    @Test
+    public void testDropOldest_WrapsAndGrows() {
+        history = new TransactionHistory(4);
+        for (var i = 0; i < 4; i++) {
+            history.append(i, i, i, i % 2 == 1);
+        }
+        history.dropOldest();
+        history.dropOldest();
+        history.append(4, 4, 4, false);
+        history.append(5, 5, 5, true);
+        history.append(6, 6, 6, true);
+
+        assertEquals(5, history.size());
+        assertEquals(2, history.firstSequence());
+        assertEquals(7, history.nextSequence());
+        for (var i = 0; i < history.size(); i++) {
+            assertEquals(i + 2, history.transactionId(i));
+            assertEquals((i + 2) % 2 == 1 || i + 2 == 6, history.isDebit(i));
+        }
+    }
+
+    @Test
+    public void testDropOldest_Empty() {
+        assertThrows(IllegalStateException.class, () -> history.dropOldest());
+    }
+}
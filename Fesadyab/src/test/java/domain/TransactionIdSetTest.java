@@ -0,0 +1,82 @@
+package domain;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionIdSetTest {
+    TransactionIdSet ids;
+
+    @BeforeEach
+    public void setUp() {
+        ids = new TransactionIdSet();
+    }
+
+    @Test
+    public void testContains_Empty() {
+        assertFalse(ids.contains(0));
+        assertFalse(ids.contains(1));
+        assertEquals(0, ids.size());
+    }
+
+    @Test
+    public void testAdd_RejectsDuplicates() {
+        assertTrue(ids.add(5));
+        assertFalse(ids.add(5));
+
+        assertTrue(ids.contains(5));
+        assertEquals(1, ids.size());
+    }
+
+    @Test
+    public void testAdd_ZeroId() {
+        assertTrue(ids.add(0));
+        assertFalse(ids.add(0));
+
+        assertTrue(ids.contains(0));
+        assertTrue(ids.remove(0));
+        assertFalse(ids.contains(0));
+    }
+
+    @Test
+    public void testRemove_MissingId() {
+        ids.add(1);
+        assertFalse(ids.remove(2));
+        assertEquals(1, ids.size());
+    }
+
+    @Test
+    public void testRandomOperations_MatchHashSet() {
+        var random = new Random(7);
+        var expected = new HashSet<Integer>();
+
+        for (var i = 0; i < 200_000; i++) {
+            var id = random.nextInt(5_000) - 100;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(id), ids.remove(id));
+            } else {
+                assertEquals(expected.add(id), ids.add(id));
+            }
+        }
+
+        assertEquals(expected.size(), ids.size());
+        for (var id = -100; id < 4_900; id++) {
+            assertEquals(expected.contains(id), ids.contains(id));
+        }
+    }
+
+    @Test
+    public void testClear() {
+        ids.add(0);
+        ids.add(3);
+        ids.clear();
+
+        assertEquals(0, ids.size());
+        assertFalse(ids.contains(0));
+        assertFalse(ids.contains(3));
+    }
+}
@@ -0,0 +1,157 @@
+package domain;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionLogTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testReplay_EmptyLog() throws IOException {
+        try (var log = new TransactionLog(directory)) {
+            assertEquals(0, log.size());
+            assertEquals(0, log.replay((id, account, amount, debit) -> fail("no records expected")));
+        }
+    }
+
+    @Test
+    public void testAppend_ReplayAfterReopen() throws IOException {
+        try (var log = new TransactionLog(directory, 4, FsyncPolicy.ON_ROLL)) {
+            for (var i = 0; i < 10; i++) {
+                assertEquals(i, log.append(i, i % 3, i * 10, i % 2 == 0));
+            }
+            assertEquals(3, log.segmentCount());
+        }
+
+        try (var log = new TransactionLog(directory, 4, FsyncPolicy.ON_ROLL)) {
+            var replayed = replay(log, 0);
+            assertEquals(10, log.size());
+            assertEquals(10, replayed.size());
+            for (var i = 0; i < 10; i++) {
+                Transaction txn = replayed.get(i);
+                assertEquals(i, txn.getTransactionId());
+                assertEquals(i % 3, txn.getAccountId());
+                assertEquals(i * 10, txn.getAmount());
+                assertEquals(i % 2 == 0, txn.isDebit());
+            }
+
+            log.append(10, 0, 0, false);
+            assertEquals(11, log.size());
+        }
+    }
+
+    @Test
+    public void testReplay_FromSequenceSkipsEarlierSegments() throws IOException {
+        try (var log = new TransactionLog(directory, 3, FsyncPolicy.NEVER)) {
+            for (var i = 0; i < 8; i++) {
+                log.append(i, 0, i, false);
+            }
+
+            var replayed = replay(log, 5);
+            assertEquals(3, replayed.size());
+            assertEquals(5, replayed.get(0).getTransactionId());
+        }
+    }
+
+    @Test
+    public void testRecovery_PhysicallyTruncatedTail() throws IOException {
+        try (var log = new TransactionLog(directory, 100, FsyncPolicy.EVERY_RECORD)) {
+            for (var i = 0; i < 5; i++) {
+                log.append(i, 1, 100, true);
+            }
+        }
+
+        var segment = onlySegment();
+        try (var file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.setLength(4L * TransactionRecord.BYTES + 7);
+        }
+
+        try (var log = new TransactionLog(directory, 100, FsyncPolicy.EVERY_RECORD)) {
+            assertEquals(4, log.size());
+            assertEquals(4, replay(log, 0).size());
+            assertEquals(4, log.append(99, 1, 100, true));
+        }
+    }
+
+    @Test
+    public void testRecovery_TornRecordAndStaleTailAreDiscarded() throws IOException {
+        try (var log = new TransactionLog(directory, 100, FsyncPolicy.NEVER)) {
+            for (var i = 0; i < 6; i++) {
+                log.append(i, 1, 100, false);
+            }
+        }
+
+        try (var file = new RandomAccessFile(onlySegment().toFile(), "rw")) {
+            file.seek(3L * TransactionRecord.BYTES + 8);
+            file.writeInt(12345);
+        }
+
+        try (var log = new TransactionLog(directory, 100, FsyncPolicy.NEVER)) {
+            assertEquals(3, log.size());
+            log.append(50, 2, 200, true);
+        }
+
+        try (var log = new TransactionLog(directory, 100, FsyncPolicy.NEVER)) {
+            var replayed = replay(log, 0);
+            assertEquals(4, replayed.size());
+            assertEquals(50, replayed.get(3).getTransactionId());
+        }
+    }
+
+    @Test
+    public void testTransactionEngine_RestartRestoresState() throws IOException {
+        var random = new Random(23);
+        var transactions = new ArrayList<Transaction>();
+        for (var i = 0; i < 5_000; i++) {
+            transactions.add(new Transaction(random.nextInt(4_000), random.nextInt(50),
+                    random.nextInt(2500), random.nextBoolean()));
+        }
+
+        var reference = new TransactionEngine();
+        var expected = new int[transactions.size()];
+        for (var i = 0; i < expected.length; i++) {
+            expected[i] = reference.addTransactionAndDetectFraud(transactions.get(i));
+        }
+
+        var actual = new int[transactions.size()];
+        var half = transactions.size() / 2;
+        try (var engine = new TransactionEngine(new TransactionLog(directory, 512, FsyncPolicy.ON_ROLL))) {
+            for (var i = 0; i < half; i++) {
+                actual[i] = engine.addTransactionAndDetectFraud(transactions.get(i));
+            }
+        }
+        try (var engine = new TransactionEngine(new TransactionLog(directory, 512, FsyncPolicy.ON_ROLL))) {
+            for (var i = half; i < actual.length; i++) {
+                actual[i] = engine.addTransactionAndDetectFraud(transactions.get(i));
+            }
+            assertEquals(reference.transactionHistory.size(), engine.transactionHistory.size());
+        }
+
+        assertArrayEquals(expected, actual);
+    }
+
+    private Path onlySegment() throws IOException {
+        try (var files = Files.list(directory)) {
+            var segments = files.toList();
+            assertEquals(1, segments.size());
+            return segments.get(0);
+        }
+    }
+
+    private static List<Transaction> replay(TransactionLog log, long fromSequence) throws IOException {
+        var replayed = new ArrayList<Transaction>();
+        log.replay(fromSequence, (id, account, amount, debit) -> replayed.add(new Transaction(id, account, amount, debit)));
+        return replayed;
+    }
+}
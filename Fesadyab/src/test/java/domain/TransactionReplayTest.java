@@ -0,0 +1,131 @@
+package domain;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionReplayTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testFileReader_CsvAcrossBufferBoundaries() throws IOException {
+        var input = directory.resolve("input.csv");
+        Files.writeString(input, "transactionId,accountId,amount,isDebit\r\n1,2,300,true\r\n\n-4,5,-60,0\n7,8,9,FALSE");
+
+        var read = read(new TransactionFileReader(TransactionFileReader.Format.CSV, 48), input);
+
+        assertEquals(3, read.size());
+        assertEquals(300, read.get(0).getAmount());
+        assertTrue(read.get(0).isDebit());
+        assertEquals(-4, read.get(1).getTransactionId());
+        assertEquals(-60, read.get(1).getAmount());
+        assertFalse(read.get(1).isDebit());
+        assertEquals(8, read.get(2).getAccountId());
+    }
+
+    @Test
+    public void testFileReader_MalformedCsvReportsLine() throws IOException {
+        var input = directory.resolve("bad.csv");
+        Files.writeString(input, "1,2,3,true\n1,2,x,true\n");
+
+        var error = assertThrows(IOException.class,
+                () -> read(new TransactionFileReader(TransactionFileReader.Format.CSV), input));
+        assertTrue(error.getMessage().contains("line 2"));
+    }
+
+    @Test
+    public void testFileReader_BinaryStopsAtUnwrittenAndPartialRecords() throws IOException {
+        var buffer = ByteBuffer.allocate(3 * TransactionRecord.BYTES + 5);
+        TransactionRecord.write(buffer, 0, 1, 1, 100, true);
+        TransactionRecord.write(buffer, TransactionRecord.BYTES, 2, 1, 200, false);
+        var input = directory.resolve("input.bin");
+        Files.write(input, buffer.array());
+
+        var read = read(new TransactionFileReader(TransactionFileReader.Format.BINARY, 20), input);
+
+        assertEquals(2, read.size());
+        assertEquals(200, read.get(1).getAmount());
+    }
+
+    @Test
+    public void testFileReader_BinaryStopsAtCorruptRecord() throws IOException {
+        var buffer = ByteBuffer.allocate(3 * TransactionRecord.BYTES);
+        for (var i = 0; i < 3; i++) {
+            TransactionRecord.write(buffer, i * TransactionRecord.BYTES, i, 1, 100 * i, true);
+        }
+        // the present flag survives, but the amount no longer matches the checksum
+        buffer.putInt(TransactionRecord.BYTES + 8, 12345);
+        var input = directory.resolve("input.bin");
+        Files.write(input, buffer.array());
+
+        var read = read(new TransactionFileReader(TransactionFileReader.Format.BINARY, 20), input);
+
+        assertEquals(1, read.size());
+        assertEquals(0, read.get(0).getTransactionId());
+    }
+
+    @Test
+    public void testReplay_WritesSameScoresAsEngine() throws IOException {
+        var random = new Random(8);
+        var csv = new StringBuilder();
+        var reference = new TransactionEngine();
+        var expected = new StringBuilder();
+        for (var i = 0; i < 20_000; i++) {
+            var txn = new Transaction(random.nextInt(15_000), random.nextInt(100), random.nextInt(2500), random.nextBoolean());
+            csv.append(txn.getTransactionId()).append(',').append(txn.getAccountId()).append(',')
+                    .append(txn.getAmount()).append(',').append(txn.isDebit()).append('\n');
+            expected.append(reference.addTransactionAndDetectFraud(txn)).append('\n');
+        }
+        var input = directory.resolve("replay.csv");
+        Files.writeString(input, csv);
+
+        var scores = new ByteArrayOutputStream();
+        var report = new ByteArrayOutputStream();
+        var replay = new TransactionReplay(new TransactionEngine(), new PrintStream(report), 0);
+
+        assertEquals(20_000, replay.replay(input, TransactionFileReader.Format.CSV, scores));
+        assertEquals(expected.toString(), scores.toString(StandardCharsets.US_ASCII));
+        var lines = report.toString().lines().toList();
+        assertTrue(lines.size() > 1);
+        assertTrue(lines.get(lines.size() - 1).startsWith("done: processed=20000"));
+        assertTrue(lines.get(0).contains("p99="));
+    }
+
+    @Test
+    public void testReplay_ReadsTransactionLogSegments() throws IOException {
+        var logDirectory = directory.resolve("log");
+        try (var log = new TransactionLog(logDirectory, 64, FsyncPolicy.NEVER)) {
+            log.append(1, 1, 500, true);
+            log.append(2, 1, 1500, true);
+        }
+        Path segment;
+        try (var files = Files.list(logDirectory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+
+        var scores = new ByteArrayOutputStream();
+        var replay = new TransactionReplay(new TransactionEngine(), new PrintStream(new ByteArrayOutputStream()), 1000);
+
+        assertEquals(2, replay.replay(segment, TransactionFileReader.Format.BINARY, scores));
+        assertEquals("500\n500\n", scores.toString(StandardCharsets.US_ASCII));
+    }
+
+    private static List<Transaction> read(TransactionFileReader reader, Path input) throws IOException {
+        var read = new ArrayList<Transaction>();
+        reader.read(input, (id, account, amount, debit) -> read.add(new Transaction(id, account, amount, debit)));
+        return read;
+    }
+}
@@ -0,0 +1,232 @@
+package domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionServerTest {
+    private static TransactionServer start(TransactionEngine engine) throws IOException {
+        return new TransactionServer(engine, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    }
+
+    private static SocketChannel connect(TransactionServer server) throws IOException {
+        return SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()));
+    }
+
+    private static ByteBuffer request(int[][] batch) {
+        var buffer = ByteBuffer.allocate(Integer.BYTES + batch.length * TransactionRecord.BYTES);
+        buffer.putInt(0, batch.length);
+        for (var i = 0; i < batch.length; i++) {
+            TransactionRecord.write(buffer, Integer.BYTES + i * TransactionRecord.BYTES,
+                    batch[i][0], batch[i][1], batch[i][2], batch[i][3] == 1);
+        }
+        return buffer;
+    }
+
+    private static int[][] randomBatch(Random random, int firstId, int size) {
+        var batch = new int[size][];
+        for (var i = 0; i < size; i++) {
+            // repeated ids exercise deduplication
+            batch[i] = new int[]{firstId + i - random.nextInt(3), random.nextInt(20), random.nextInt(3000), random.nextInt(2)};
+        }
+        return batch;
+    }
+
+    private static int[] readResponse(SocketChannel channel) throws IOException {
+        var header = ByteBuffer.allocate(Integer.BYTES);
+        readFully(channel, header);
+        var scores = ByteBuffer.allocate(header.getInt(0) * Integer.BYTES);
+        readFully(channel, scores);
+        var result = new int[scores.capacity() / Integer.BYTES];
+        scores.flip().asIntBuffer().get(result);
+        return result;
+    }
+
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Connection closed");
+            }
+        }
+    }
+
+    private static void awaitStats(TransactionServer server, Predicate<TransactionServer.Stats> condition)
+            throws InterruptedException {
+        for (var i = 0; i < 500 && !condition.test(server.getStats()); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.test(server.getStats()));
+    }
+
+    @Test
+    public void testServer_ScoresMatchEngine() throws IOException {
+        var reference = new TransactionEngine();
+        try (var server = start(new TransactionEngine()); var channel = connect(server)) {
+            var batch = new int[][]{{1, 1, 100, 1}, {2, 1, 200, 1}, {3, 1, 1500, 1}, {3, 1, 1500, 1}, {4, 2, 50, 0}};
+
+            channel.write(request(batch));
+            var scores = readResponse(channel);
+
+            assertEquals(batch.length, scores.length);
+            for (var i = 0; i < batch.length; i++) {
+                assertEquals(reference.addAndScore(batch[i][0], batch[i][1], batch[i][2], batch[i][3] == 1), scores[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testServer_PipelinedBatchesAnsweredInOrder() throws IOException {
+        var random = new Random(23);
+        var reference = new TransactionEngine();
+        try (var server = start(new TransactionEngine()); var channel = connect(server)) {
+            var batches = new int[200][][];
+            var stream = ByteBuffer.allocate(200 * (Integer.BYTES + 64 * TransactionRecord.BYTES));
+            for (var b = 0; b < batches.length; b++) {
+                batches[b] = randomBatch(random, b * 64, 1 + random.nextInt(64));
+                stream.put(request(batches[b]));
+            }
+            stream.flip();
+            // everything goes out before the first response is read
+            while (stream.hasRemaining()) {
+                channel.write(stream);
+            }
+
+            for (var batch : batches) {
+                var scores = readResponse(channel);
+                assertEquals(batch.length, scores.length);
+                for (var i = 0; i < batch.length; i++) {
+                    assertEquals(reference.addAndScore(batch[i][0], batch[i][1], batch[i][2], batch[i][3] == 1), scores[i]);
+                }
+            }
+            assertEquals(batches.length, server.getStats().batches());
+        }
+    }
+
+    @Test
+    public void testServer_SlowReaderIsThrottledNotDropped() throws IOException, InterruptedException {
+        var random = new Random(7);
+        var reference = new TransactionEngine();
+        try (var server = start(new TransactionEngine()); var channel = connect(server)) {
+            // far more response bytes than the server's write buffer and the socket buffers hold
+            var batches = new int[64][][];
+            for (var b = 0; b < batches.length; b++) {
+                batches[b] = randomBatch(random, b * TransactionServer.MAX_BATCH, TransactionServer.MAX_BATCH);
+            }
+            var writer = Thread.ofPlatform().start(() -> {
+                try {
+                    for (var batch : batches) {
+                        var request = request(batch);
+                        while (request.hasRemaining()) {
+                            channel.write(request);
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            for (var batch : batches) {
+                var scores = readResponse(channel);
+                for (var i = 0; i < batch.length; i++) {
+                    assertEquals(reference.addAndScore(batch[i][0], batch[i][1], batch[i][2], batch[i][3] == 1), scores[i]);
+                }
+            }
+            writer.join();
+            assertEquals(0, server.getStats().protocolErrors());
+        }
+    }
+
+    @Test
+    public void testServer_ConnectionsShareOneEngine() throws IOException, InterruptedException {
+        try (var server = start(new TransactionEngine()); var first = connect(server); var second = connect(server)) {
+            first.write(request(new int[][]{{1, 1, 100, 1}}));
+            assertArrayEquals(new int[]{100}, readResponse(first));
+
+            // the id was already seen through the other connection
+            second.write(request(new int[][]{{1, 1, 5000, 1}}));
+            assertArrayEquals(new int[]{0}, readResponse(second));
+
+            awaitStats(server, stats -> stats.openConnections() == 2);
+            assertEquals(2, server.getStats().acceptedConnections());
+            assertEquals(2, server.getStats().transactions());
+        }
+    }
+
+    @Test
+    public void testServer_CorruptRecordClosesConnection() throws IOException, InterruptedException {
+        var engine = new TransactionEngine();
+        try (var server = start(engine); var channel = connect(server)) {
+            var request = request(new int[][]{{1, 1, 100, 1}, {2, 1, 200, 1}, {3, 1, 300, 1}});
+            request.put(Integer.BYTES + TransactionRecord.BYTES + 5, (byte) 0x7f);
+
+            channel.write(request);
+
+            assertEquals(-1, channel.read(ByteBuffer.allocate(Integer.BYTES)));
+            awaitStats(server, stats -> stats.protocolErrors() == 1 && stats.openConnections() == 0);
+            // none of the frame was applied, not even the records before the corrupt one
+            assertEquals(0, engine.getHistorySize());
+            assertEquals(0, server.getStats().queuedResponseBytes());
+        }
+    }
+
+    @Test
+    public void testServer_EngineFailureClosesOnlyThatConnection() throws IOException, InterruptedException {
+        FraudRule failing = (engine, slot, amount, isDebit) -> {
+            if (amount == 666) {
+                throw new IllegalStateException("rule down");
+            }
+            return 0;
+        };
+        var options = new EngineOptions();
+        options.setFraudRules(List.of(failing));
+        var engine = new TransactionEngine(options);
+        try (var server = start(engine)) {
+            try (var channel = connect(server)) {
+                channel.write(request(new int[][]{{1, 1, 100, 1}, {2, 1, 666, 1}, {3, 1, 300, 1}}));
+
+                assertEquals(-1, channel.read(ByteBuffer.allocate(Integer.BYTES)));
+                awaitStats(server, stats -> stats.protocolErrors() == 1 && stats.openConnections() == 0);
+                // the record before the failure was applied; its partial response was dropped
+                assertEquals(1, engine.getHistorySize());
+                assertEquals(0, server.getStats().queuedResponseBytes());
+            }
+
+            try (var channel = connect(server)) {
+                channel.write(request(new int[][]{{4, 2, 100, 1}}));
+                assertArrayEquals(new int[]{0}, readResponse(channel));
+            }
+            assertNull(server.getFailure());
+        }
+    }
+
+    @Test
+    public void testServer_OversizedBatchClosesConnection() throws IOException, InterruptedException {
+        try (var server = start(new TransactionEngine()); var channel = connect(server)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, TransactionServer.MAX_BATCH + 1));
+
+            assertEquals(-1, channel.read(ByteBuffer.allocate(Integer.BYTES)));
+            awaitStats(server, stats -> stats.protocolErrors() == 1);
+        }
+    }
+
+    @Test
+    public void testReport_BatchesPerSecond() {
+        var out = new ByteArrayOutputStream();
+        TransactionServer.report(new PrintStream(out), new TransactionServer.Stats(1, 1, 10, 100, 0, 0),
+                new TransactionServer.Stats(2, 3, 30, 500, 64, 1), 2000);
+
+        assertEquals(String.format("server: connections=2 batches/s=10 txn/s=200 queued=64B errors=1%n"), out.toString());
+    }
+}
@@ -27,6 +27,19 @@ public class TransactionTest {
         assertNotEquals(txn1, txn2);
     }
 
+    @Test
+    public void testHashCodeConsistentWithEquals() {
+        Transaction txn1 = new Transaction();
+        txn1.setTransactionId(7);
+        txn1.setAmount(100);
+
+        Transaction txn2 = new Transaction();
+        txn2.setTransactionId(7);
+        txn2.setAmount(200);
+
+        assertEquals(txn1.hashCode(), txn2.hashCode());
+    }
+
     @Test
     public void testEqualsDifferentObjectType() {
         Transaction txn = new Transaction();
@@ -0,0 +1,278 @@
+package domain;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteAheadLogTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testAppend_FutureCompletesWhenDurable() throws Exception {
+        try (var log = new WriteAheadLog(directory.resolve("wal"))) {
+            var first = log.append(1, 1, 100, true);
+            var second = log.append(2, 1, 200, false);
+
+            assertEquals(2L, second.get());
+            assertTrue(first.isDone());
+            assertEquals(2, log.durableSize());
+            assertEquals(2L, log.commit().get());
+        }
+    }
+
+    @Test
+    public void testReplay_AfterReopen() throws Exception {
+        var file = directory.resolve("wal");
+        try (var log = new WriteAheadLog(file, Duration.ZERO, 64)) {
+            for (var i = 0; i < 10; i++) {
+                log.append(i, i % 3, i * 10, i % 2 == 0);
+            }
+        }
+
+        try (var log = new WriteAheadLog(file)) {
+            assertEquals(10, log.size());
+            var replayed = replay(log, 0);
+            assertEquals(10, replayed.size());
+            for (var i = 0; i < 10; i++) {
+                assertEquals(i, replayed.get(i).getTransactionId());
+                assertEquals(i % 3, replayed.get(i).getAccountId());
+                assertEquals(i * 10, replayed.get(i).getAmount());
+                assertEquals(i % 2 == 0, replayed.get(i).isDebit());
+            }
+            assertEquals(3, replay(log, 7).size());
+        }
+    }
+
+    @Test
+    public void testGroupCommit_ConcurrentAppendersShareFlushes() throws Exception {
+        var file = directory.resolve("wal");
+        var appenders = 8;
+        var perAppender = 500;
+        try (var log = new WriteAheadLog(file, Duration.ofMillis(2), 4096);
+             var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var futures = new ArrayList<CompletableFuture<Long>>();
+            for (var a = 0; a < appenders; a++) {
+                var base = a * perAppender;
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    CompletableFuture<Long> last = null;
+                    for (var i = 0; i < perAppender; i++) {
+                        last = log.append(base + i, base, i, true);
+                    }
+                    return last.join();
+                }, executor));
+            }
+            for (var future : futures) {
+                future.get();
+            }
+
+            assertEquals(appenders * perAppender, log.durableSize());
+            assertTrue(log.getGroupCommitCount() < appenders * perAppender);
+        }
+
+        try (var log = new WriteAheadLog(file)) {
+            var ids = replay(log, 0).stream().mapToInt(Transaction::getTransactionId).sorted().toArray();
+            assertEquals(appenders * perAppender, ids.length);
+            for (var i = 0; i < ids.length; i++) {
+                assertEquals(i, ids[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testRecovery_TornGroupIsTruncated() throws Exception {
+        var file = directory.resolve("wal");
+        try (var log = new WriteAheadLog(file, Duration.ZERO, 64)) {
+            log.append(1, 1, 100, true).get();
+            log.append(2, 1, 200, true).get();
+        }
+
+        var groupBytes = WriteAheadLog.HEADER_BYTES + TransactionRecord.BYTES;
+        try (var raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(2L * groupBytes - 3);
+        }
+
+        try (var log = new WriteAheadLog(file)) {
+            assertEquals(1, log.size());
+            assertEquals(groupBytes, Files.size(file));
+            log.append(3, 1, 300, true).get();
+        }
+
+        try (var log = new WriteAheadLog(file)) {
+            var replayed = replay(log, 0);
+            assertEquals(2, replayed.size());
+            assertEquals(3, replayed.get(1).getTransactionId());
+        }
+    }
+
+    @Test
+    public void testRecovery_ChecksumMismatchDropsGroupAndRest() throws Exception {
+        var file = directory.resolve("wal");
+        try (var log = new WriteAheadLog(file, Duration.ZERO, 64)) {
+            for (var i = 0; i < 3; i++) {
+                log.append(i, 1, 100, true).get();
+            }
+        }
+
+        var groupBytes = WriteAheadLog.HEADER_BYTES + TransactionRecord.BYTES;
+        try (var raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(groupBytes + WriteAheadLog.HEADER_BYTES + 8);
+            raf.writeInt(12345);
+        }
+
+        try (var log = new WriteAheadLog(file)) {
+            assertEquals(1, log.size());
+            assertEquals(1, replay(log, 0).size());
+        }
+    }
+
+    @Test
+    public void testClose_CommitsPendingAndRejectsAppends() throws Exception {
+        var log = new WriteAheadLog(directory.resolve("wal"), Duration.ofSeconds(10), 1 << 16);
+        var pending = log.append(1, 1, 100, true);
+
+        log.close();
+
+        assertEquals(1L, pending.get());
+        assertThrows(IllegalStateException.class, () -> log.append(2, 1, 100, true));
+    }
+
+    @Test
+    public void testTransactionEngine_DurableScoresAndRestart() throws Exception {
+        var random = new Random(24);
+        var transactions = new ArrayList<Transaction>();
+        for (var i = 0; i < 3_000; i++) {
+            transactions.add(new Transaction(random.nextInt(2_500), random.nextInt(40),
+                    random.nextInt(2500), random.nextBoolean()));
+        }
+
+        var reference = new TransactionEngine();
+        var expected = new int[transactions.size()];
+        for (var i = 0; i < expected.length; i++) {
+            expected[i] = reference.addTransactionAndDetectFraud(transactions.get(i));
+        }
+
+        var file = directory.resolve("wal");
+        var actual = new int[transactions.size()];
+        var half = transactions.size() / 2;
+        try (var engine = new TransactionEngine(new EngineOptions(), new WriteAheadLog(file))) {
+            var futures = new ArrayList<CompletableFuture<Integer>>();
+            for (var i = 0; i < half; i++) {
+                futures.add(engine.addTransactionDurably(transactions.get(i)));
+            }
+            for (var i = 0; i < half; i++) {
+                actual[i] = futures.get(i).get();
+            }
+            assertEquals(engine.getWriteAheadLog().size(), engine.getWriteAheadLog().durableSize());
+        }
+        try (var engine = new TransactionEngine(new EngineOptions(), new WriteAheadLog(file))) {
+            for (var i = half; i < actual.length; i++) {
+                actual[i] = engine.addTransactionAndDetectFraud(transactions.get(i));
+            }
+            assertEquals(reference.getHistorySize(), engine.getHistorySize());
+        }
+
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void testSnapshot_CommitsPendingRecordsFirst() throws Exception {
+        var file = directory.resolve("wal");
+        var snapshot = directory.resolve("engine.snap");
+        try (var engine = new TransactionEngine(new EngineOptions(),
+                new WriteAheadLog(file, Duration.ofSeconds(10), 1 << 16))) {
+            for (var i = 0; i < 10; i++) {
+                engine.addAndScore(i, 1, 100 + i, true);
+            }
+            engine.writeSnapshot(snapshot, true);
+
+            // what a crash right after the snapshot would leave on disk
+            var copy = directory.resolve("wal-copy");
+            Files.copy(file, copy);
+            try (var crashed = new WriteAheadLog(copy)) {
+                assertEquals(10, crashed.durableSize());
+                var restored = new TransactionEngine(new EngineOptions(), snapshot, crashed);
+                assertEquals(10, restored.getHistorySize());
+            }
+        }
+    }
+
+    @Test
+    public void testSnapshot_ReplayStartsAtRecordedOffset() throws Exception {
+        var file = directory.resolve("wal");
+        var snapshot = directory.resolve("engine.snap");
+        var reference = new TransactionEngine();
+        try (var engine = new TransactionEngine(new EngineOptions(),
+                new WriteAheadLog(file, Duration.ofSeconds(10), 1 << 16))) {
+            for (var i = 0; i < 10; i++) {
+                engine.addAndScore(i, 1, 100 + i, true);
+                reference.addAndScore(i, 1, 100 + i, true);
+            }
+            engine.writeSnapshot(snapshot, true);
+            for (var i = 10; i < 15; i++) {
+                engine.addAndScore(i, 2, 300 + i, true);
+                reference.addAndScore(i, 2, 300 + i, true);
+            }
+        }
+
+        try (var log = new WriteAheadLog(file)) {
+            var restored = new TransactionEngine(new EngineOptions(), snapshot, log);
+            assertEquals(reference.getTransactionHistory(), restored.getTransactionHistory());
+            assertEquals(reference.getAverageTransactionAmountByAccount(2), restored.getAverageTransactionAmountByAccount(2));
+        }
+
+        // the same records in one group put the recorded offset inside it; replaying by
+        // sequence alone would not notice
+        var regrouped = directory.resolve("wal-regrouped");
+        try (var log = new WriteAheadLog(regrouped, Duration.ofSeconds(10), 1 << 16)) {
+            for (var i = 0; i < 15; i++) {
+                log.append(i, 1, 100 + i, true);
+            }
+        }
+        try (var log = new WriteAheadLog(regrouped)) {
+            assertThrows(IOException.class, () -> new TransactionEngine(new EngineOptions(), snapshot, log));
+        }
+    }
+
+    @Test
+    public void testAsyncTransactionEngine_AcknowledgesOnlyDurableTransactions() throws Exception {
+        var engine = new TransactionEngine(new EngineOptions(), new WriteAheadLog(directory.resolve("wal")));
+        var asyncEngine = new AsyncTransactionEngine(engine, 1024, 64, Duration.ofMillis(1));
+        var futures = new ArrayList<CompletableFuture<Integer>>();
+        for (var i = 0; i < 500; i++) {
+            futures.add(asyncEngine.submit(new Transaction(i, i % 7, 100 + i, true)));
+        }
+
+        futures.get(futures.size() - 1).get();
+        assertEquals(500, engine.getWriteAheadLog().durableSize());
+        for (var future : futures) {
+            assertTrue(future.isDone());
+        }
+        asyncEngine.close();
+        engine.close();
+    }
+
+    @Test
+    public void testTransactionEngine_DurableRequiresLog() {
+        assertThrows(IllegalStateException.class,
+                () -> new TransactionEngine().addTransactionDurably(new Transaction(1, 1, 100, true)));
+    }
+
+    private static List<Transaction> replay(WriteAheadLog log, long fromSequence) throws IOException {
+        var replayed = new ArrayList<Transaction>();
+        log.replay(fromSequence, (id, account, amount, debit) -> replayed.add(new Transaction(id, account, amount, debit)));
+        return replayed;
+    }
+}